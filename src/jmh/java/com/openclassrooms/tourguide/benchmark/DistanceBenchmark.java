@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.geo.AttractionSpatialIndex;
+import com.openclassrooms.tourguide.geo.DistanceKernel;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Cost of one distance calculation (called for every location / attraction pair) : previous acos formula, haversine,
+ * and the distances from one position to the whole catalogue (loop over getDistance, bulk kernel, radius search).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceBenchmark {
+
+    private RewardsService rewardsService;
+    private Location from;
+    private Location to;
+    private List<Attraction> attractions;
+    private DistanceKernel kernel;
+    private AttractionSpatialIndex index;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        rewardsService = new RewardsService(new StubGpsUtil(0), new StubRewardCentral(0));
+        from = new Location(33.817595, -117.922008);
+        to = new Location(40.7128, -74.0060);
+        attractions = rewardsService.getAttractions();
+        kernel = new DistanceKernel(attractions);
+        index = new AttractionSpatialIndex(attractions);
+        distances = new double[attractions.size()];
+    }
+
+    @TearDown
+    public void tearDown() {
+        rewardsService.getExecutors().close();
+    }
+
+    @Benchmark
+    public double getDistance() {
+        return rewardsService.getDistance(from, to);
+    }
+
+    // ancienne formule (loi des cosinus sphérique), pour comparaison.
+    @Benchmark
+    public double legacyAcosDistance() {
+        double lat1 = Math.toRadians(from.latitude);
+        double lon1 = Math.toRadians(from.longitude);
+        double lat2 = Math.toRadians(to.latitude);
+        double lon2 = Math.toRadians(to.longitude);
+        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+        return 1.15077945 * 60 * Math.toDegrees(angle);
+    }
+
+    @Benchmark
+    public double[] catalogueWithGetDistance() {
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = rewardsService.getDistance(attractions.get(i), from);
+        }
+        return distances;
+    }
+
+    @Benchmark
+    public double[] catalogueWithKernel() {
+        kernel.distancesFrom(from, distances);
+        return distances;
+    }
+
+    // recherche dans le rayon de proximité par défaut (10 miles) : boîte englobante puis cordes.
+    @Benchmark
+    public List<Attraction> withinProximityBuffer() {
+        return index.withinRadius(from, 10);
+    }
+
+}
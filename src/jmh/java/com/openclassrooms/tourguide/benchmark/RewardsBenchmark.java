@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.model.user.LocationStorage;
+import com.openclassrooms.tourguide.model.user.User;
+import com.openclassrooms.tourguide.model.user.UserReward;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Reward calculation of one user according to the length of the history, and insertion of a reward.
+ * <p>
+ * RewardCentral has no latency : only the scan of the history, the spatial index and the cache are measured.
+ * </p>
+ * <p>
+ * The locations are drawn once per iteration. Each calculateRewards invocation builds a new user (new id, so new reward and
+ * cache keys) with these locations : the cost of this build is measured alone by newUser, to be subtracted.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewardsBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int historyLength;
+
+    @Param({ "OBJECTS", "COLUMNAR" })
+    private LocationStorage storage;
+
+    private StubGpsUtil gpsUtil;
+    private RewardsService rewardsService;
+    // positions de l'itération, recopiées dans l'historique de chaque nouvel utilisateur.
+    private List<VisitedLocation> locations;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        gpsUtil = new StubGpsUtil(0);
+        rewardsService = new RewardsService(gpsUtil, new StubRewardCentral(0));
+    }
+
+    /*
+     * préparation par itération et non par appel : Level.Invocation ajoute deux lectures d'horloge à chaque appel, du même
+     * ordre que les quelques microsecondes mesurées.
+     */
+    @Setup(Level.Iteration)
+    public void newLocations() {
+        locations = new ArrayList<>(historyLength);
+        for (int i = 0; i < historyLength; i++) {
+            locations.add(gpsUtil.getUserLocation(null));
+        }
+        user = newUser();
+    }
+
+    @TearDown
+    public void tearDown() {
+        rewardsService.getExecutors().close();
+    }
+
+    // référence : construction seule de l'utilisateur, incluse dans calculateRewards.
+    @Benchmark
+    public User newUser() {
+        User newUser = new User(UUID.randomUUID(), "benchmark", "000", "benchmark@tourGuide.com");
+        newUser.setLocationStorage(storage);
+        for (VisitedLocation visitedLocation : locations) {
+            newUser.addToVisitedLocations(
+                    new VisitedLocation(newUser.getUserId(), visitedLocation.location, visitedLocation.timeVisited));
+        }
+        return newUser;
+    }
+
+    // nouvel utilisateur à chaque appel, sinon le watermark et les récompenses déjà reçues rendent les calculs suivants vides.
+    @Benchmark
+    public User calculateRewards() {
+        User newUser = newUser();
+        rewardsService.calculateRewards(newUser);
+        return newUser;
+    }
+
+    @Benchmark
+    public boolean addUserReward() {
+        // cas le plus fréquent pour le Tracker : une seule récompense par attraction, les suivantes sont rejetées.
+        boolean added = false;
+        VisitedLocation visitedLocation = user.getLastVisitedLocation();
+        for (Attraction attraction : gpsUtil.getAttractions()) {
+            added |= user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+            added |= user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+        }
+        return added;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil with a fixed latency and no rate limit : the benchmarks measure the application code, not the random latency
+ * of the library.
+ */
+public class StubGpsUtil extends GpsUtil {
+
+    private final long latencyNanos;
+    // le catalogue de la librairie est chargé une fois (gpsUtil.getAttractions() attend 10 ms à chaque appel).
+    private final List<Attraction> attractions = super.getAttractions();
+
+    /**
+     * @param latencyMicros the latency of getUserLocation (0 = none).
+     */
+    public StubGpsUtil(long latencyMicros) {
+        this.latencyNanos = latencyMicros * 1000;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // position proche d'une attraction pour déclencher des récompenses.
+        Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+        Location location = new Location(attraction.latitude + random.nextDouble(-0.1, 0.1),
+                attraction.longitude + random.nextDouble(-0.1, 0.1));
+        return new VisitedLocation(userId, location, new Date());
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+}
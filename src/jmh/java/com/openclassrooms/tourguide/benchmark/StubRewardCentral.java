@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral with a fixed latency and constant points.
+ */
+public class StubRewardCentral extends RewardCentral {
+
+    private final long latencyNanos;
+
+    /**
+     * @param latencyMicros the latency of getAttractionRewardPoints (0 = none).
+     */
+    public StubRewardCentral(long latencyMicros) {
+        this.latencyNanos = latencyMicros * 1000;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        return 100;
+    }
+
+}
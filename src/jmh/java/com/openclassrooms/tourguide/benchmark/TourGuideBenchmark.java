@@ -0,0 +1,90 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.model.user.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.util.InternalTestHelper;
+
+/**
+ * End-to-end paths of TourGuideService with simulated latencies : one tracker cycle over all the users, and the
+ * getNearbyAttractions endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TourGuideBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int userNumber;
+
+    // latence simulée de gpsUtil.getUserLocation et de RewardCentral (en microsecondes).
+    @Param({ "1000" })
+    private long latencyMicros;
+
+    private TourGuideService tourGuideService;
+    private RewardsService rewardsService;
+    private List<User> users;
+    private VisitedLocation visitedLocation;
+
+    @Setup
+    public void setUp() {
+        // pas d'utilisateurs internes : le Tracker démarré par le service n'a rien à faire.
+        InternalTestHelper.setInternalUserNumber(0);
+        StubGpsUtil gpsUtil = new StubGpsUtil(latencyMicros);
+        rewardsService = new RewardsService(gpsUtil, new StubRewardCentral(latencyMicros));
+        tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+        visitedLocation = gpsUtil.getUserLocation(UUID.randomUUID());
+    }
+
+    // nouveaux utilisateurs à chaque itération : les historiques ne grossissent pas d'une itération à l'autre.
+    @Setup(Level.Iteration)
+    public void newUsers() {
+        users = new ArrayList<>(userNumber);
+        for (int i = 0; i < userNumber; i++) {
+            users.add(new User(UUID.randomUUID(), "benchmark" + i, "000", "benchmark" + i + "@tourGuide.com"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        rewardsService.getExecutors().close();
+    }
+
+    @Benchmark
+    public List<User> trackUserLocationByUsers() {
+        tourGuideService.trackUserLocationByUsers(users);
+        return users;
+    }
+
+    @Benchmark
+    public List<NearByAttractionDTO> getNearByAttractions() {
+        return tourGuideService.getNearByAttractions(visitedLocation, users.get(0));
+    }
+
+}
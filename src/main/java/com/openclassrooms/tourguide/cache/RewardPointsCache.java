@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.gateway.CallPriority;
+import com.openclassrooms.tourguide.gateway.RewardGateway;
+import com.openclassrooms.tourguide.gateway.RewardRequestCoalescer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache of the reward points returned by RewardCentral, keyed by (attractionId, userId).
+ * <p>
+ * The number of points of a given attraction for a given user does not change between two requests,
+ * so RewardCentral (the slowest dependency) is called only once per pair :
+ * <ul>
+ * <li>bounded in size and in time (entries expire after a configurable duration).</li>
+ * <li>single-flight : concurrent requests for the same pair share the same pending call.</li>
+ * <li>hit/miss counters available through {@link #stats()} and published as cache.* meters (tag cache=rewardPoints).</li>
+ * </ul>
+ * </p>
+ * <p>
+ * With a {@link RewardRequestCoalescer}, the misses are not sent one by one but grouped in batches.
+ * </p>
+ */
+public class RewardPointsCache implements MeterBinder, AutoCloseable {
+
+    // clé du cache : une attraction pour un utilisateur.
+    record Key(UUID attractionId, UUID userId) {
+    }
+
+    private final AsyncLoadingCache<Key, Integer> cache;
+    // regroupement des appels en lots (null = un appel par absence).
+    private final RewardRequestCoalescer coalescer;
+
+    /**
+     * @param rewardGateway the service called when the points are not in the cache.
+     * @param executor      the pool on which RewardCentral is called.
+     * @param spec          maximum size and time to live of the entries.
+     */
+    public RewardPointsCache(RewardGateway rewardGateway, Executor executor, CacheProperties.Spec spec) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getExpireAfterWrite())
+                .executor(executor)
+                .recordStats()
+                .buildAsync((key, loaderExecutor) -> {
+                    // l'appel garde la priorité (interactive ou de fond) du thread qui a demandé les points.
+                    CallPriority priority = CallPriority.current();
+                    return CompletableFuture.supplyAsync(() -> CallPriority.callWith(priority,
+                            () -> rewardGateway.getAttractionRewardPoints(key.attractionId(), key.userId())), loaderExecutor);
+                });
+        this.coalescer = null;
+    }
+
+    /**
+     * @param coalescer the batches sent to RewardCentral when the points are not in the cache.
+     * @param executor  the pool of the cache maintenance tasks.
+     * @param spec      maximum size and time to live of the entries.
+     */
+    public RewardPointsCache(RewardRequestCoalescer coalescer, Executor executor, CacheProperties.Spec spec) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getExpireAfterWrite())
+                .executor(executor)
+                .recordStats()
+                .buildAsync((key, loaderExecutor) -> coalescer.submit(key.attractionId(), key.userId()));
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Returns the reward points without blocking, RewardCentral is called on the executor only on a cache miss.
+     *
+     * @param attractionId the attraction.
+     * @param userId       the user.
+     * @return a future completed with the number of points.
+     */
+    public CompletableFuture<Integer> getAsync(UUID attractionId, UUID userId) {
+        return cache.get(new Key(attractionId, userId));
+    }
+
+    /**
+     * Same as getAsync but blocks until the points are available.
+     *
+     * @param attractionId the attraction.
+     * @param userId       the user.
+     * @return the number of points.
+     */
+    public int get(UUID attractionId, UUID userId) {
+        return getAsync(attractionId, userId).join();
+    }
+
+    /**
+     * @return the hit/miss/load counters since the creation of the cache.
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    /**
+     * Publishes the size, hits, misses and evictions of the cache.
+     *
+     * @param registry the registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "rewardPoints");
+    }
+
+    /**
+     * Stops the coalescer, if any, after sending its pending requests.
+     */
+    @Override
+    public void close() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+    }
+
+    /**
+     * Removes all the entries (ex : when the attraction catalogue is reloaded).
+     */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.model.user.TripDealsQuery;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import tripPricer.Provider;
+
+/**
+ * Cache of the offers returned by TripPricer, keyed by the pricing inputs ({@link TripDealsQuery}).
+ * <p>
+ * A change of the preferences or of the reward points of a user changes the key, so the old offers are no longer used
+ * (they expire with their time to live). Concurrent requests for the same key share the same call to TripPricer.
+ * The hit/miss counters are published as cache.* meters (tag cache=tripDeals).
+ * </p>
+ */
+public class TripDealsCache implements MeterBinder {
+
+    private final Cache<TripDealsQuery, List<Provider>> cache;
+    private final Duration timeToLive;
+
+    /**
+     * @param spec maximum size and time to live of the entries.
+     */
+    public TripDealsCache(CacheProperties.Spec spec) {
+        this.timeToLive = spec.getExpireAfterWrite();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached offers, or calls the pricing service and caches its offers.
+     *
+     * @param query   the pricing inputs.
+     * @param pricing the call to the pricing service.
+     * @return the offers.
+     */
+    public List<Provider> get(TripDealsQuery query, Function<TripDealsQuery, List<Provider>> pricing) {
+        return cache.get(query, pricing);
+    }
+
+    /**
+     * @param query the pricing inputs.
+     * @return the cached offers, or null.
+     */
+    public List<Provider> getIfPresent(TripDealsQuery query) {
+        return cache.getIfPresent(query);
+    }
+
+    /**
+     * Caches offers obtained outside of {@link #get}.
+     *
+     * @param query     the pricing inputs.
+     * @param providers the offers.
+     */
+    public void put(TripDealsQuery query, List<Provider> providers) {
+        cache.put(query, providers);
+    }
+
+    /**
+     * @return the time to live of the offers.
+     */
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return the hit/miss counters since the creation of the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "tripDeals");
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.concurrent;
+
+/**
+ * Kind of threads used for the blocking calls to the external libraries (GpsUtil, RewardCentral).
+ */
+public enum ExecutionMode {
+
+    // pools de threads système de taille fixe (comportement historique).
+    PLATFORM,
+
+    // un thread virtuel par tâche (Java 21 minimum) : un appel bloquant ne monopolise plus un thread système.
+    VIRTUAL
+
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of tasks in flight in one stage of a pipeline.
+ * <p>
+ * The producer takes a permit before submitting a task and the task gives it back when it completes : when the stage is full,
+ * the producer blocks until a task ends (backpressure). Nothing is kept per task, so the memory used does not depend on the
+ * number of tasks submitted.
+ * </p>
+ */
+public class InFlightLimiter {
+
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    /**
+     * @param maxInFlight the maximum number of tasks in flight.
+     */
+    public InFlightLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1 : " + maxInFlight);
+        }
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Takes a permit, waiting for a task to complete if the stage is full.
+     *
+     * @throws InterruptedException if the producer is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Takes a permit if the stage is not full, without waiting.
+     *
+     * @return true if a permit was taken, false if the task must be skipped.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Gives back the permit of a completed task.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Waits until no task is in flight.
+     *
+     * @throws InterruptedException if the caller is interrupted while waiting.
+     */
+    public void awaitIdle() throws InterruptedException {
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    /**
+     * @return the number of tasks in flight.
+     */
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory giving readable names to pool threads (ex : tourguide-gps-12) so they can be identified in logs and thread dumps.
+ * <p>
+ * Threads are daemon threads : they never prevent the JVM from stopping (tests build services without Spring).
+ * </p>
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public NamedThreadFactory(String poolName) {
+        this.prefix = "tourguide-" + poolName + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
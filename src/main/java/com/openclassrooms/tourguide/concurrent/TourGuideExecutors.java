@@ -0,0 +1,237 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.openclassrooms.tourguide.config.ExecutorProperties;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Thread pools shared by all the services, created once for the whole application instead of one pool per call.
+ * <p>
+ * The pools are bounded (fixed number of threads and bounded queue). When a queue is full the task is run by the
+ * calling thread, which slows down the producer instead of rejecting work.
+ * </p>
+ * <p>
+ * No task submitted to the reward or pricing pools waits on another pool, so the pools can never deadlock each other.
+ * </p>
+ * <p>
+ * In {@link ExecutionMode#VIRTUAL} mode, the gps, reward and pricing pools start one virtual thread per task, so thousands
+ * of blocking GpsUtil / RewardCentral / TripPricer calls no longer pin thousands of OS threads. The cpu pool always stays
+ * a platform pool. If the JVM does not support virtual threads (before Java 21), the platform pools are used.
+ * </p>
+ * <p>
+ * The queue size, active threads and pool size of the platform pools are published as gauges (tag pool).
+ * </p>
+ */
+@Log4j2
+public class TourGuideExecutors implements AutoCloseable, MeterBinder {
+
+    private final ExecutorService gpsExecutor;
+    private final ExecutorService rewardExecutor;
+    private final ExecutorService pricingExecutor;
+    private final ExecutorService cpuExecutor;
+    private final long shutdownTimeoutSeconds;
+    private final ExecutionMode mode;
+    private final int maxInFlightLocations;
+    private final int maxInFlightRewards;
+
+    public TourGuideExecutors(ExecutorProperties properties) {
+        this.mode = resolveMode(properties.getMode());
+        if (mode == ExecutionMode.VIRTUAL) {
+            this.gpsExecutor = newVirtualThreadPerTaskExecutor();
+            this.rewardExecutor = newVirtualThreadPerTaskExecutor();
+            this.pricingExecutor = newVirtualThreadPerTaskExecutor();
+        } else {
+            this.gpsExecutor = newBoundedPool("gps", properties.getGpsPoolSize(), properties.getQueueCapacity());
+            this.rewardExecutor = newBoundedPool("reward", properties.getRewardPoolSize(), properties.getQueueCapacity());
+            this.pricingExecutor = newBoundedPool("pricing", properties.getPricingPoolSize(), properties.getQueueCapacity());
+        }
+        this.cpuExecutor = newBoundedPool("cpu", properties.getCpuPoolSize(), properties.getQueueCapacity());
+        this.shutdownTimeoutSeconds = properties.getShutdownTimeoutSeconds();
+        this.maxInFlightLocations = properties.getMaxInFlightLocations();
+        this.maxInFlightRewards = properties.getMaxInFlightRewards();
+        log.info("Executors created : mode=" + mode + ", gps=" + properties.getGpsPoolSize() + ", reward="
+                + properties.getRewardPoolSize() + ", pricing=" + properties.getPricingPoolSize() + ", cpu="
+                + properties.getCpuPoolSize());
+    }
+
+    /**
+     * Default pools, used when the services are built outside of Spring (unit tests).
+     */
+    public TourGuideExecutors() {
+        this(new ExecutorProperties());
+    }
+
+    /**
+     * @return the mode really used (PLATFORM if VIRTUAL was requested on a JVM without virtual threads).
+     */
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the factory of the threads that run the calls to an external service (see DependencyResilience) : virtual
+     * threads in VIRTUAL mode, so a blocking library call does not pin an OS thread, platform daemon threads otherwise.
+     *
+     * @param name the name of the threads (ex : gps-call).
+     * @return the factory.
+     */
+    public ThreadFactory newCallThreadFactory(String name) {
+        return mode == ExecutionMode.VIRTUAL ? newVirtualThreadFactory(name) : new NamedThreadFactory(name);
+    }
+
+    /**
+     * @return the maximum number of users whose location is being fetched at the same time by a tracking pipeline.
+     */
+    public int getMaxInFlightLocations() {
+        return maxInFlightLocations;
+    }
+
+    /**
+     * @return the maximum number of users whose rewards are being calculated at the same time by a tracking pipeline.
+     */
+    public int getMaxInFlightRewards() {
+        return maxInFlightRewards;
+    }
+
+    /**
+     * @return the pool for the per-user tracking tasks (blocking GpsUtil calls).
+     */
+    public ExecutorService gps() {
+        return gpsExecutor;
+    }
+
+    /**
+     * @return the pool for the RewardCentral lookups.
+     */
+    public ExecutorService reward() {
+        return rewardExecutor;
+    }
+
+    /**
+     * @return the pool for the TripPricer calls.
+     */
+    public ExecutorService pricing() {
+        return pricingExecutor;
+    }
+
+    /**
+     * @return the pool for CPU only work : the scans of the attraction index (reward calculation, ranking of the nearest
+     *         attractions). No task of this pool calls an external service.
+     */
+    public ExecutorService cpu() {
+        return cpuExecutor;
+    }
+
+    /**
+     * Registers the gauges of the platform pools (the virtual thread executors have no queue nor fixed size).
+     *
+     * @param registry the registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindPool(registry, "gps", gpsExecutor);
+        bindPool(registry, "reward", rewardExecutor);
+        bindPool(registry, "pricing", pricingExecutor);
+        bindPool(registry, "cpu", cpuExecutor);
+    }
+
+    private static void bindPool(MeterRegistry registry, String poolName, ExecutorService executor) {
+        if (!(executor instanceof ThreadPoolExecutor pool)) {
+            return;
+        }
+        Gauge.builder("tourguide.executor.queue.size", pool, p -> p.getQueue().size())
+                .description("Tasks waiting in the queue of the pool").tag("pool", poolName).register(registry);
+        Gauge.builder("tourguide.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("Threads running a task").tag("pool", poolName).register(registry);
+        Gauge.builder("tourguide.executor.pool.size", pool, ThreadPoolExecutor::getPoolSize)
+                .description("Threads of the pool").tag("pool", poolName).register(registry);
+    }
+
+    /**
+     * Stops the pools in the order of the processing chain : first the producers (gps), then the pools they feed (cpu, reward,
+     * pricing), so that tasks already submitted can still finish.
+     */
+    @Override
+    public void close() {
+        log.info("Shutting down executors");
+        shutdownAndWait("gps", gpsExecutor);
+        shutdownAndWait("cpu", cpuExecutor);
+        shutdownAndWait("reward", rewardExecutor);
+        shutdownAndWait("pricing", pricingExecutor);
+    }
+
+    private void shutdownAndWait(String poolName, ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                log.warn("Executor " + poolName + " did not terminate in " + shutdownTimeoutSeconds + " s, forcing shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks that virtual threads are available on the running JVM.
+     *
+     * @param requested the mode asked in the configuration.
+     * @return the mode that can really be used.
+     */
+    private static ExecutionMode resolveMode(ExecutionMode requested) {
+        if (requested == ExecutionMode.VIRTUAL && findVirtualThreadFactoryMethod() == null) {
+            log.warn("Virtual threads require Java 21 (running " + Runtime.version() + "), falling back to platform pools");
+            return ExecutionMode.PLATFORM;
+        }
+        return requested;
+    }
+
+    // le projet est compilé en Java 17 : Executors.newVirtualThreadPerTaskExecutor() n'est accessible que par réflexion.
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) findVirtualThreadFactoryMethod().invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create a virtual thread executor", e);
+        }
+    }
+
+    // Thread.ofVirtual().name(prefix, 1).factory(), par réflexion comme newVirtualThreadPerTaskExecutor.
+    private static ThreadFactory newVirtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "tourguide-" + name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create a virtual thread factory", e);
+        }
+    }
+
+    // pool de taille fixe avec file d'attente bornée : si la file est pleine, c'est le thread appelant qui exécute la tâche.
+    private static ExecutorService newBoundedPool(String poolName, int poolSize, int queueCapacity) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(poolName),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Size and time to live of the application caches (prefix "tourguide.cache" in application.properties).
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide.cache")
+public class CacheProperties {
+
+    // points de récompense RewardCentral : une entrée par couple (attraction, utilisateur).
+    private Spec rewardPoints = new Spec(1_000_000, Duration.ofHours(24));
+    // offres TripPricer : une entrée par critères de calcul (utilisateur, préférences, points de récompense).
+    private Spec tripDeals = new Spec(100_000, Duration.ofMinutes(10));
+
+    /**
+     * Settings of one cache.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Spec {
+        // nombre maximum d'entrées, les moins utilisées sont supprimées au-delà.
+        private long maximumSize;
+        // durée de vie d'une entrée depuis son chargement.
+        private Duration expireAfterWrite;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.openclassrooms.tourguide.concurrent.ExecutionMode;
+
+import lombok.Data;
+
+/**
+ * Sizing of the thread pools shared by the whole application (prefix "tourguide.executor" in application.properties).
+ * <p>
+ * One pool per kind of work so that a slow dependency cannot starve the others :
+ * <ul>
+ * <li>gps : per-user tracking tasks, dominated by the blocking GpsUtil call.</li>
+ * <li>reward : RewardCentral lookups (leaf tasks, they never wait on another pool).</li>
+ * <li>pricing : TripPricer calls of the trip deals fan-out (leaf tasks too).</li>
+ * <li>cpu : distance scans and other CPU-only work, sized on the number of cores.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * In VIRTUAL mode the gps, reward and pricing pools are replaced by one virtual thread per task (requires a Java 21
+ * runtime), the pool sizes of these pools are then ignored.
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide.executor")
+public class ExecutorProperties {
+
+    // PLATFORM (pools de threads système) ou VIRTUAL (threads virtuels, Java 21).
+    private ExecutionMode mode = ExecutionMode.PLATFORM;
+
+    // 1000 threads : valeur retenue lors des essais de performance (10 s pour 10.000 utilisateurs).
+    private int gpsPoolSize = 1000;
+    private int rewardPoolSize = 1000;
+    // appels TripPricer : quelques appels par demande d'offres (voir GatewayProperties.PricingFanOut).
+    private int pricingPoolSize = 100;
+    private int cpuPoolSize = Runtime.getRuntime().availableProcessors();
+
+    // nombre maximum d'utilisateurs en cours de traitement dans chaque étape du suivi (localisation, récompenses) :
+    // au-delà, l'étape précédente attend (backpressure), la mémoire utilisée ne dépend plus du nombre d'utilisateurs.
+    private int maxInFlightLocations = 1000;
+    private int maxInFlightRewards = 1000;
+
+    // taille maximale de la file d'attente de chaque pool : au-delà, la tâche est exécutée par l'appelant (backpressure).
+    private int queueCapacity = 200_000;
+
+    // temps accordé à chaque pool pour terminer ses tâches lors de l'arrêt de l'application.
+    private long shutdownTimeoutSeconds = 30;
+
+}
@@ -0,0 +1,139 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.openclassrooms.tourguide.gateway.GatewayMode;
+import com.openclassrooms.tourguide.gateway.LatencyDistribution;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Choice of the gateways to the external services and settings of the simulated ones (prefix "tourguide.gateway" in
+ * application.properties).
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide.gateway")
+public class GatewayProperties {
+
+    // LIBRARY (librairies gpsUtil, RewardCentral, TripPricer) ou SIMULATED (latence, erreurs et débit configurables).
+    private GatewayMode mode = GatewayMode.LIBRARY;
+
+    // valeurs par défaut proches des librairies.
+    private Simulation gps = new Simulation(LatencyDistribution.UNIFORM, Duration.ofMillis(30), Duration.ofMillis(100), 0, 1000, 1);
+    private Simulation reward = new Simulation(LatencyDistribution.UNIFORM, Duration.ofMillis(1), Duration.ofMillis(1000), 0, 0, 2);
+    private Simulation pricing = new Simulation(LatencyDistribution.UNIFORM, Duration.ofMillis(1), Duration.ofMillis(50), 0, 0, 3);
+
+    // limites de chaque service : appels simultanés, part réservée aux requêtes interactives, débit.
+    private Limits gpsLimits = new Limits(1000, 50, 0, 0, Duration.ofSeconds(30));
+    private Limits rewardLimits = new Limits(1000, 50, 0, 0, Duration.ofSeconds(30));
+    private Limits pricingLimits = new Limits(100, 10, 0, 0, Duration.ofSeconds(10));
+
+    // délai maximum, nouvelles tentatives et disjoncteur de chaque service.
+    private Resilience gpsResilience = new Resilience(Duration.ofSeconds(2), 3, Duration.ofMillis(50), Duration.ofSeconds(1), 20,
+            Duration.ofSeconds(30));
+    private Resilience rewardResilience = new Resilience(Duration.ofSeconds(3), 3, Duration.ofMillis(50), Duration.ofSeconds(1),
+            20, Duration.ofSeconds(30));
+    private Resilience pricingResilience = new Resilience(Duration.ofSeconds(2), 2, Duration.ofMillis(50),
+            Duration.ofMillis(500), 10, Duration.ofSeconds(30));
+
+    // regroupement des demandes de points de récompense en lots (désactivé : un appel par demande).
+    private RewardBatch rewardBatch = new RewardBatch();
+
+    // demandes d'offres TripPricer envoyées en parallèle et délai de réponse des offres.
+    private PricingFanOut pricingFanOut = new PricingFanOut();
+
+    /**
+     * Bulkhead and rate limit of one external service (see DependencyGuard).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+        // nombre maximum d'appels simultanés.
+        private int maxConcurrentCalls = 100;
+        // appels simultanés (et jetons de débit) réservés aux requêtes interactives.
+        private int reservedForInteractive;
+        // nombre maximum d'appels par seconde (0 = illimité) et nombre d'appels possibles d'un coup.
+        private int maxCallsPerSecond;
+        private int burst;
+        // attente maximum d'un créneau et d'un jeton : au-delà, l'appel est refusé.
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Timeout, retries and circuit breaker of one external service (see DependencyResilience).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Resilience {
+        // durée maximum d'un essai : au-delà, l'appel est abandonné.
+        private Duration timeout = Duration.ofSeconds(2);
+        // nombre d'essais, le premier compris.
+        private int maxAttempts = 3;
+        // attente avant un nouvel essai : aléatoire entre 0 et initialBackoff * 2^(essai - 1), plafonnée à maxBackoff.
+        private Duration initialBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        // nombre d'échecs consécutifs qui ouvre le disjoncteur, et durée pendant laquelle il reste ouvert.
+        private int failureThreshold = 20;
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Coalescing of the reward points requests.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RewardBatch {
+        private boolean enabled;
+        // durée pendant laquelle une demande attend les suivantes avant l'envoi du lot.
+        private Duration window = Duration.ofMillis(10);
+        // nombre maximum de demandes par lot : le lot est envoyé dès qu'il est plein.
+        private int maxSize = 100;
+        // nombre maximum de lots en cours : borne la charge envoyée au service.
+        private int maxConcurrentBatches = 8;
+    }
+
+    /**
+     * Parallel pricing requests of the trip deals (see TripDealsAggregator).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PricingFanOut {
+        // nombre d'appels TripPricer envoyés en parallèle pour une demande d'offres (chaque appel propose 5 fournisseurs).
+        // les appels sont identiques : N appels multiplient par N la charge de TripPricer et garder le moins cher de chaque
+        // fournisseur fait baisser les prix (minimum de N tirages). 1 = un seul appel, les prix de TripPricer tels quels.
+        private int shards = 1;
+        // temps de réponse maximum : les offres reçues à cette échéance sont retournées, les autres alimentent le cache.
+        private Duration deadline = Duration.ofMillis(500);
+        // nombre maximum d'offres retournées (les moins chères, une par fournisseur).
+        private int maxDeals = 5;
+    }
+
+    /**
+     * Behaviour of one simulated service.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Simulation {
+        // forme de la distribution des latences.
+        private LatencyDistribution distribution = LatencyDistribution.UNIFORM;
+        // latences minimum et maximum d'un appel.
+        private Duration minLatency = Duration.ZERO;
+        private Duration maxLatency = Duration.ZERO;
+        // proportion d'appels en erreur (0 à 1).
+        private double errorRate;
+        // nombre maximum d'appels par seconde (0 = illimité).
+        private int maxCallsPerSecond;
+        // graine du générateur aléatoire (reproductibilité).
+        private long seed;
+    }
+
+}
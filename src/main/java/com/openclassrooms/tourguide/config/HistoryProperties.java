@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.openclassrooms.tourguide.model.user.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.user.LocationStorage;
+
+import lombok.Data;
+
+/**
+ * Memory layout and retention of the location history of the users (prefix "tourguide.history" in application.properties).
+ * <p>
+ * By default the VisitedLocation objects are stored and nothing is removed.
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide.history")
+public class HistoryProperties {
+
+    // stockage des positions : OBJECTS (objets VisitedLocation) ou COLUMNAR (tableaux de primitives, plus compact).
+    private LocationStorage storage = LocationStorage.OBJECTS;
+
+    // nombre maximum de positions conservées par utilisateur (0 = illimité).
+    private int maxEntries = 0;
+    // les positions plus anciennes sont supprimées (non défini = illimité).
+    private Duration maxAge;
+    // les positions plus anciennes sont sous-échantillonnées (non défini = pas de sous-échantillonnage).
+    private Duration downsampleAfter;
+    // une seule position conservée par intervalle une fois sous-échantillonné.
+    private Duration downsampleInterval = Duration.ofHours(1);
+
+    /**
+     * @return the retention policy described by these properties.
+     */
+    public LocationRetentionPolicy toPolicy() {
+        return new LocationRetentionPolicy(maxEntries, maxAge, downsampleAfter, downsampleInterval);
+    }
+
+}
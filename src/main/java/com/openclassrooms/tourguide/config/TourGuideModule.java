@@ -1,16 +1,53 @@
 package com.openclassrooms.tourguide.config;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.gateway.DependencyGuard;
+import com.openclassrooms.tourguide.gateway.DependencyResilience;
+import com.openclassrooms.tourguide.gateway.GatewayMode;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.GpsUtilGateway;
+import com.openclassrooms.tourguide.gateway.GuardedGpsGateway;
+import com.openclassrooms.tourguide.gateway.GuardedPricingGateway;
+import com.openclassrooms.tourguide.gateway.GuardedRewardGateway;
+import com.openclassrooms.tourguide.gateway.LatencySimulator;
+import com.openclassrooms.tourguide.gateway.MeteredGpsGateway;
+import com.openclassrooms.tourguide.gateway.MeteredPricingGateway;
+import com.openclassrooms.tourguide.gateway.MeteredRewardGateway;
+import com.openclassrooms.tourguide.gateway.PricingGateway;
+import com.openclassrooms.tourguide.gateway.ResilientGpsGateway;
+import com.openclassrooms.tourguide.gateway.ResilientPricingGateway;
+import com.openclassrooms.tourguide.gateway.ResilientRewardGateway;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+import com.openclassrooms.tourguide.gateway.RewardGateway;
+import com.openclassrooms.tourguide.gateway.RewardRequestCoalescer;
+import com.openclassrooms.tourguide.gateway.SimulatedGpsGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedPricingGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedRewardGateway;
+import com.openclassrooms.tourguide.gateway.TripPricerGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsAggregator;
+import com.openclassrooms.tourguide.tracker.TrackerHealthIndicator;
 
 /**
  * Spring configuration of the TourGuide application.
  */
 @Configuration
+@EnableConfigurationProperties({ ExecutorProperties.class, CacheProperties.class, HistoryProperties.class,
+        GatewayProperties.class, TrackerProperties.class })
 public class TourGuideModule {
 
     @Bean
@@ -23,9 +60,142 @@ public class TourGuideModule {
         return new RewardCentral();
     }
 
+    // compteurs et chronomètres de l'application, publiés dans le registre Micrometer d'Actuator.
+    @Bean
+    public TourGuideMetrics getTourGuideMetrics(MeterRegistry meterRegistry) {
+        return new TourGuideMetrics(meterRegistry);
+    }
+
+    // passerelles vers les services externes : librairies ou simulations (voir GatewayProperties), chaque appel est chronométré.
+    // les appels passent par une cloison et une limite de débit par service (le temps d'attente n'est pas compté dans la durée de l'appel).
+    // puis par un délai maximum, de nouveaux essais et un disjoncteur : chaque essai est chronométré séparément.
+    @Bean
+    public GpsGateway getGpsGateway(GatewayProperties gatewayProperties, TourGuideExecutors tourGuideExecutors,
+            TourGuideMetrics tourGuideMetrics) {
+        DependencyGuard guard = new DependencyGuard("gps", gatewayProperties.getGpsLimits(),
+                tourGuideMetrics.getRegistry());
+        DependencyResilience resilience = getGpsResilience(gatewayProperties, tourGuideExecutors, tourGuideMetrics);
+        if (gatewayProperties.getMode() == GatewayMode.SIMULATED) {
+            // catalogue de gpsUtil repris une fois, avec des attractionId stables (un lot = une requête groupée).
+            GpsGateway gpsGateway = new SimulatedGpsGateway(new LatencySimulator("gps", gatewayProperties.getGps()),
+                    getGpsUtil().getAttractions());
+            return new GuardedGpsGateway(
+                    new ResilientGpsGateway(new MeteredGpsGateway(gpsGateway, tourGuideMetrics), resilience), guard);
+        }
+        // gpsUtil n'a pas de requête groupée : les lots sont répartis sur le pool gps, un créneau et un jeton par appel.
+        GpsGateway resilient = new ResilientGpsGateway(
+                new MeteredGpsGateway(new GpsUtilGateway(getGpsUtil()), tourGuideMetrics), resilience);
+        return new GuardedGpsGateway(resilient, guard, tourGuideExecutors.gps(),
+                tourGuideExecutors.getMaxInFlightLocations());
+    }
+
+    @Bean
+    public RewardGateway getRewardGateway(GatewayProperties gatewayProperties, TourGuideExecutors tourGuideExecutors,
+            TourGuideMetrics tourGuideMetrics) {
+        DependencyGuard guard = new DependencyGuard("reward", gatewayProperties.getRewardLimits(),
+                tourGuideMetrics.getRegistry());
+        DependencyResilience resilience = getRewardResilience(gatewayProperties, tourGuideExecutors, tourGuideMetrics);
+        if (gatewayProperties.getMode() == GatewayMode.SIMULATED) {
+            RewardGateway rewardGateway = new SimulatedRewardGateway(
+                    new LatencySimulator("reward", gatewayProperties.getReward()));
+            return new GuardedRewardGateway(
+                    new ResilientRewardGateway(new MeteredRewardGateway(rewardGateway, tourGuideMetrics), resilience), guard);
+        }
+        // RewardCentral n'a pas de requête groupée : lots répartis sur le pool reward, un créneau et un jeton par appel.
+        RewardGateway resilient = new ResilientRewardGateway(
+                new MeteredRewardGateway(new RewardCentralGateway(getRewardCentral()), tourGuideMetrics), resilience);
+        return new GuardedRewardGateway(resilient, guard, tourGuideExecutors.reward(),
+                tourGuideExecutors.getMaxInFlightRewards());
+    }
+
+    @Bean
+    public PricingGateway getPricingGateway(GatewayProperties gatewayProperties, TourGuideExecutors tourGuideExecutors,
+            TourGuideMetrics tourGuideMetrics) {
+        PricingGateway pricingGateway;
+        if (gatewayProperties.getMode() == GatewayMode.SIMULATED) {
+            pricingGateway = new SimulatedPricingGateway(new LatencySimulator("pricing", gatewayProperties.getPricing()));
+        } else {
+            pricingGateway = new TripPricerGateway(new TripPricer());
+        }
+        DependencyGuard guard = new DependencyGuard("pricing", gatewayProperties.getPricingLimits(),
+                tourGuideMetrics.getRegistry());
+        DependencyResilience resilience = getPricingResilience(gatewayProperties, tourGuideExecutors, tourGuideMetrics);
+        PricingGateway resilient = new ResilientPricingGateway(new MeteredPricingGateway(pricingGateway, tourGuideMetrics),
+                resilience);
+        return new GuardedPricingGateway(resilient, guard);
+    }
+
+    // délai maximum, nouveaux essais et disjoncteur de chaque service : threads des appels bornés à la taille de sa cloison
+    // (virtuels en mode VIRTUAL), arrêtés par Spring à l'arrêt du contexte.
+    @Bean(destroyMethod = "close")
+    public DependencyResilience getGpsResilience(GatewayProperties gatewayProperties,
+            TourGuideExecutors tourGuideExecutors, TourGuideMetrics tourGuideMetrics) {
+        return new DependencyResilience("gps", gatewayProperties.getGpsResilience(),
+                gatewayProperties.getGpsLimits().getMaxConcurrentCalls(), tourGuideExecutors.newCallThreadFactory("gps-call"),
+                tourGuideMetrics.getRegistry());
+    }
+
+    @Bean(destroyMethod = "close")
+    public DependencyResilience getRewardResilience(GatewayProperties gatewayProperties,
+            TourGuideExecutors tourGuideExecutors, TourGuideMetrics tourGuideMetrics) {
+        return new DependencyResilience("reward", gatewayProperties.getRewardResilience(),
+                gatewayProperties.getRewardLimits().getMaxConcurrentCalls(), tourGuideExecutors.newCallThreadFactory("reward-call"),
+                tourGuideMetrics.getRegistry());
+    }
+
+    @Bean(destroyMethod = "close")
+    public DependencyResilience getPricingResilience(GatewayProperties gatewayProperties,
+            TourGuideExecutors tourGuideExecutors, TourGuideMetrics tourGuideMetrics) {
+        return new DependencyResilience("pricing", gatewayProperties.getPricingResilience(),
+                gatewayProperties.getPricingLimits().getMaxConcurrentCalls(), tourGuideExecutors.newCallThreadFactory("pricing-call"),
+                tourGuideMetrics.getRegistry());
+    }
+
+    // close() est appelée par Spring à l'arrêt du contexte, après la destruction des services qui utilisent les pools.
+    // les jauges des pools (MeterBinder) sont enregistrées automatiquement par Actuator, comme celles du cache.
+    @Bean(destroyMethod = "close")
+    public TourGuideExecutors getTourGuideExecutors(ExecutorProperties executorProperties) {
+        return new TourGuideExecutors(executorProperties);
+    }
+
+    // RewardCentral est appelé sur le pool reward en cas d'absence dans le cache, ou par lots si le regroupement est activé.
+    @Bean(destroyMethod = "close")
+    public RewardPointsCache getRewardPointsCache(RewardGateway rewardGateway, TourGuideExecutors tourGuideExecutors,
+            CacheProperties cacheProperties, GatewayProperties gatewayProperties) {
+        GatewayProperties.RewardBatch rewardBatch = gatewayProperties.getRewardBatch();
+        if (rewardBatch.isEnabled()) {
+            RewardRequestCoalescer coalescer = new RewardRequestCoalescer(rewardGateway, rewardBatch.getWindow(),
+                    rewardBatch.getMaxSize(), rewardBatch.getMaxConcurrentBatches());
+            return new RewardPointsCache(coalescer, tourGuideExecutors.reward(), cacheProperties.getRewardPoints());
+        }
+        return new RewardPointsCache(rewardGateway, tourGuideExecutors.reward(), cacheProperties.getRewardPoints());
+    }
+
+    // offres TripPricer par critères de calcul (jauges publiées par Actuator, comme celles du cache des points).
+    @Bean
+    public TripDealsCache getTripDealsCache(CacheProperties cacheProperties) {
+        return new TripDealsCache(cacheProperties.getTripDeals());
+    }
+
+    // appels TripPricer en parallèle sur le pool pricing, offres reçues avant l'échéance, les retardataires vont en cache.
+    @Bean
+    public TripDealsAggregator getTripDealsAggregator(PricingGateway pricingGateway, TourGuideExecutors tourGuideExecutors,
+            TripDealsCache tripDealsCache, GatewayProperties gatewayProperties, TourGuideMetrics tourGuideMetrics) {
+        return new TripDealsAggregator(pricingGateway, tourGuideExecutors.pricing(), tripDealsCache,
+                gatewayProperties.getPricingFanOut(), tourGuideMetrics);
+    }
+
+    @Bean
+    public RewardsService getRewardsService(GpsGateway gpsGateway, TourGuideExecutors tourGuideExecutors,
+            RewardPointsCache rewardPointsCache, TourGuideMetrics tourGuideMetrics) {
+        return new RewardsService(gpsGateway, tourGuideExecutors, rewardPointsCache, tourGuideMetrics);
+    }
+
+    // état du Tracker dans /actuator/health (DOWN si les cycles dépassent l'intervalle plusieurs fois de suite).
     @Bean
-    public RewardsService getRewardsService() {
-        return new RewardsService(getGpsUtil(), getRewardCentral());
+    public TrackerHealthIndicator trackerHealthIndicator(TourGuideService tourGuideService,
+            TrackerProperties trackerProperties) {
+        return new TrackerHealthIndicator(tourGuideService.tracker, trackerProperties.getOverrunsBeforeDown());
     }
 
 }
@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Cadence and sharding of the Tracker, and behaviour when a cycle overruns (prefix "tourguide.tracker" in application.properties).
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide.tracker")
+public class TrackerProperties {
+
+    // intervalle entre le début de deux cycles (cadence fixe).
+    private Duration interval = Duration.ofMinutes(5);
+    // nombre de tranches d'utilisateurs (par hash de userId) : une tranche est localisée tous les interval / shards.
+    private int shards = 1;
+    // nombre de dépassements consécutifs à partir duquel l'indicateur de santé passe à DOWN.
+    private int overrunsBeforeDown = 3;
+    // délestage : après un dépassement, une partie des utilisateurs localisés récemment est ignorée au cycle suivant
+    // (la part du cycle précédent qui a dépassé sa tranche horaire, les plus récemment localisés d'abord).
+    private boolean loadShedding = false;
+    // délestage : seuls les utilisateurs localisés depuis moins longtemps peuvent être ignorés (inférieur à l'intervalle).
+    private Duration minUserInterval = Duration.ofMinutes(2);
+    // calcul des attractions les plus proches de chaque utilisateur localisé, lues ensuite par /getNearbyAttractions.
+    // désactivé par défaut : jusqu'à 5 demandes de points à RewardCentral par utilisateur et par cycle, rarement en cache
+    // pour un grand nombre d'utilisateurs (utilisateurs x attractions au-delà de la taille du cache des points).
+    private boolean precomputeNearbyAttractions = false;
+
+}
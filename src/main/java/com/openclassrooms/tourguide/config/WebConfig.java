@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.openclassrooms.tourguide.controller.InteractiveCallInterceptor;
+
+/**
+ * Spring MVC configuration : the calls made while handling a REST request have the interactive priority.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new InteractiveCallInterceptor());
+    }
+
+}
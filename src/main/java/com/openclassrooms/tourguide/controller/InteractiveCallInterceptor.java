@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.controller;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.openclassrooms.tourguide.gateway.CallPriority;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Gives the interactive priority to the calls to the external services made by the thread of a REST request, so that they
+ * go before the calls of the tracker (see {@link CallPriority}).
+ */
+public class InteractiveCallInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        CallPriority.set(CallPriority.INTERACTIVE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        // le thread retourne dans le pool du serveur.
+        CallPriority.reset();
+    }
+
+}
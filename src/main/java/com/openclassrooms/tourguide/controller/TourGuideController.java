@@ -1,15 +1,21 @@
 package com.openclassrooms.tourguide.controller;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import gpsUtil.location.VisitedLocation;
 
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.dto.RewardsSummaryDTO;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.model.user.UserReward;
 import com.openclassrooms.tourguide.service.TourGuideService;
@@ -22,6 +28,11 @@ import tripPricer.Provider;
 @RestController
 public class TourGuideController {
 
+    /**
+     * Maximum number of users located by one /trackUsers request : each user is a call to the geolocation service.
+     */
+    public static final int MAX_TRACKED_USERS = 100;
+
     @Autowired
     private TourGuideService tourGuideService;
 
@@ -46,6 +57,25 @@ public class TourGuideController {
         return tourGuideService.getUserLocation(getUser(userName));
     }
     
+    /**
+     * Locates several users in one batch and recalculates their rewards.
+     *
+     * @param userName the names of the users (parameter repeated, unknown names are ignored).
+     * @return the new location of each located user, by userName.
+     * @throws ResponseStatusException 400 if more than {@link #MAX_TRACKED_USERS} names are given.
+     */
+    @RequestMapping("/trackUsers")
+    public Map<String, VisitedLocation> trackUsers(@RequestParam List<String> userName) {
+        // taille du lot bornée : une seule requête ne doit pas pouvoir occuper tout le service de géolocalisation.
+        if (userName.size() > MAX_TRACKED_USERS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_TRACKED_USERS + " users can be tracked at once : " + userName.size());
+        }
+        List<User> users = userName.stream().distinct().map(this::getUser).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return tourGuideService.trackUserLocations(users);
+    }
+
     /**
      * Retrieves a user's location and searches for the nearest attractions.
      * 
@@ -70,6 +100,17 @@ public class TourGuideController {
         return tourGuideService.getUserRewards(getUser(userName));
     }
 
+    /**
+     * Summarizes a user's rewards (number of rewards and total points).
+     * 
+     * @param userName the user's name.
+     * @return the summary.
+     */
+    @RequestMapping("/getRewardsSummary")
+    public RewardsSummaryDTO getRewardsSummary(@RequestParam String userName) {
+        return tourGuideService.getRewardsSummary(getUser(userName));
+    }
+
     /**
      * Provides travel offers available to the user
      * 
@@ -0,0 +1,21 @@
+package com.openclassrooms.tourguide.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * DTO summarizing the rewards of a user (for the JSON response of /getRewardsSummary) : read from running totals kept by
+ * the user, without iterating over the rewards.
+ */
+@Value
+@AllArgsConstructor
+public class RewardsSummaryDTO {
+
+    // The name of the user.
+    private String userName;
+    // The number of rewarded attractions.
+    private int rewardCount;
+    // The sum of the reward points.
+    private int totalRewardPoints;
+
+}
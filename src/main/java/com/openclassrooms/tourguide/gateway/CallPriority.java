@@ -0,0 +1,62 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.function.Supplier;
+
+/**
+ * Priority of the calls to the external services made by the current thread.
+ * <p>
+ * The threads of the REST requests are {@link #INTERACTIVE} (set by an interceptor), every other thread (tracker, pools) is
+ * {@link #BACKGROUND}. A task moved to a pool keeps the priority of its caller only if it is run through
+ * {@link #callWith(CallPriority, Supplier)}.
+ * </p>
+ */
+public enum CallPriority {
+
+    // requête d'un utilisateur : prioritaire.
+    INTERACTIVE,
+    // traitement de fond (Tracker, calculs par lots).
+    BACKGROUND;
+
+    private static final ThreadLocal<CallPriority> CURRENT = ThreadLocal.withInitial(() -> BACKGROUND);
+
+    /**
+     * @return the priority of the current thread.
+     */
+    public static CallPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs a task with a priority, then restores the previous one.
+     *
+     * @param priority the priority of the calls made by the task.
+     * @param task     the task.
+     * @return the result of the task.
+     */
+    public static <T> T callWith(CallPriority priority, Supplier<T> task) {
+        CallPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Sets the priority of the current thread until {@link #reset()}.
+     *
+     * @param priority the priority.
+     */
+    public static void set(CallPriority priority) {
+        CURRENT.set(priority);
+    }
+
+    /**
+     * Gives the current thread back its default priority (BACKGROUND).
+     */
+    public static void reset() {
+        CURRENT.remove();
+    }
+
+}
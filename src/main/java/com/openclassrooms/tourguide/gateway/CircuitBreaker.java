@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.gateway;
+
+/**
+ * Circuit breaker of one external service.
+ * <p>
+ * CLOSED : the calls are sent. After failureThreshold consecutive failures the circuit opens : the calls fail immediately
+ * during openDuration, so a service that is down no longer holds threads. Then one trial call is let through (HALF_OPEN) :
+ * the circuit closes if it succeeds, and opens again if it fails.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    // un seul appel d'essai à la fois en HALF_OPEN.
+    private boolean trialInFlight;
+
+    /**
+     * @param failureThreshold the number of consecutive failures that opens the circuit.
+     * @param openNanos        the time the circuit stays open before a trial call.
+     */
+    public CircuitBreaker(int failureThreshold, long openNanos) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1 : " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * @return true if a call can be sent now.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful call : the circuit closes.
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a failed call : the circuit opens after failureThreshold consecutive failures, or after a failed trial.
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a call that was not sent (ex : interrupted caller) : no effect on the state.
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    /**
+     * @return the current state (OPEN is reported until the next call attempt turns it into HALF_OPEN).
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.config.GatewayProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bulkhead and rate limit in front of one external service.
+ * <p>
+ * The bulkhead bounds the number of calls in flight, with a few slots reserved for the interactive calls : the tracker
+ * can never take all the slots. The optional token bucket bounds the number of calls per second, with a reserve for the
+ * interactive calls too. A call that gets no slot or no token within the maximum wait is refused with a
+ * {@link GatewayRejectedException}.
+ * </p>
+ * <p>
+ * Meters (tag service) : tourguide.gateway.wait (time waited for a slot and a token, tag priority),
+ * tourguide.gateway.rejected (tags priority, reason : bulkhead or rate, threads in DependencyResilience) and
+ * tourguide.gateway.in.flight.
+ * </p>
+ */
+public class DependencyGuard {
+
+    public static final String GATEWAY_WAIT = "tourguide.gateway.wait";
+    public static final String GATEWAY_REJECTED = "tourguide.gateway.rejected";
+    public static final String GATEWAY_IN_FLIGHT = "tourguide.gateway.in.flight";
+
+    private final String service;
+    // créneaux ouverts à tous les appels.
+    private final Semaphore shared;
+    // créneaux réservés aux appels interactifs.
+    private final Semaphore reserved;
+    private final int maxConcurrentCalls;
+    // null = pas de limite de débit.
+    private final TokenBucket rateLimit;
+    private final long maxWaitNanos;
+    // compteurs et chronomètres créés une seule fois, pas à chaque appel.
+    private final Map<CallPriority, Timer> waitTimers = new EnumMap<>(CallPriority.class);
+    private final Map<CallPriority, Counter> bulkheadRejections;
+    // null = pas de limite de débit.
+    private final Map<CallPriority, Counter> rateRejections;
+
+    /**
+     * @param service  the name of the service (gps, reward, pricing).
+     * @param limits   the limits of the service.
+     * @param registry the registry of the meters.
+     */
+    public DependencyGuard(String service, GatewayProperties.Limits limits, MeterRegistry registry) {
+        if (limits.getMaxConcurrentCalls() < 1 || limits.getReservedForInteractive() < 0
+                || limits.getReservedForInteractive() >= limits.getMaxConcurrentCalls()) {
+            throw new IllegalArgumentException("Invalid limits for " + service + " : " + limits);
+        }
+        this.service = service;
+        this.maxConcurrentCalls = limits.getMaxConcurrentCalls();
+        this.shared = new Semaphore(maxConcurrentCalls - limits.getReservedForInteractive(), true);
+        this.reserved = new Semaphore(limits.getReservedForInteractive(), true);
+        this.rateLimit = limits.getMaxCallsPerSecond() > 0 ? new TokenBucket(limits.getMaxCallsPerSecond(),
+                Math.max(limits.getBurst(), 1), limits.getReservedForInteractive()) : null;
+        this.maxWaitNanos = limits.getMaxWait().toNanos();
+        for (CallPriority priority : CallPriority.values()) {
+            waitTimers.put(priority, Timer.builder(GATEWAY_WAIT)
+                    .description("Time waited for a slot and a token before a call")
+                    .tags("service", service, "priority", priority.name().toLowerCase()).register(registry));
+        }
+        this.bulkheadRejections = rejectedCounters(service, "bulkhead", registry);
+        this.rateRejections = rateLimit != null ? rejectedCounters(service, "rate", registry) : null;
+        Gauge.builder(GATEWAY_IN_FLIGHT, this, DependencyGuard::inFlight).description("Calls in flight to the service")
+                .tag("service", service).register(registry);
+    }
+
+    /**
+     * Runs a call within the limits, with the priority of the current thread.
+     *
+     * @param call the call.
+     * @return the result of the call.
+     * @throws GatewayRejectedException if the call could not be sent within the maximum wait.
+     */
+    public <T> T call(Supplier<T> call) {
+        CallPriority priority = CallPriority.current();
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        Semaphore slot = acquireSlot(priority, deadline);
+        try {
+            takeToken(priority, deadline);
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return call.get();
+        } finally {
+            slot.release();
+        }
+    }
+
+    /**
+     * @return the number of calls in flight.
+     */
+    public int inFlight() {
+        return maxConcurrentCalls - shared.availablePermits() - reserved.availablePermits();
+    }
+
+    // un appel interactif prend d'abord un créneau réservé, sinon il attend un créneau partagé comme les autres.
+    private Semaphore acquireSlot(CallPriority priority, long deadline) {
+        try {
+            if (priority == CallPriority.INTERACTIVE && reserved.tryAcquire()) {
+                return reserved;
+            }
+            if (shared.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return shared;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw reject(priority, "bulkhead", bulkheadRejections);
+    }
+
+    private void takeToken(CallPriority priority, long deadline) {
+        if (rateLimit == null) {
+            return;
+        }
+        long wait;
+        while ((wait = rateLimit.tryTake(priority)) > 0) {
+            if (System.nanoTime() + wait > deadline) {
+                throw reject(priority, "rate", rateRejections);
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(priority, "rate", rateRejections);
+            }
+        }
+    }
+
+    /**
+     * Registers the counters of the calls refused for a reason, one per priority.
+     *
+     * @param service  the name of the service.
+     * @param reason   the reason of the refusal (bulkhead, rate, threads).
+     * @param registry the registry of the meters.
+     * @return the counters by priority.
+     */
+    static Map<CallPriority, Counter> rejectedCounters(String service, String reason, MeterRegistry registry) {
+        Map<CallPriority, Counter> counters = new EnumMap<>(CallPriority.class);
+        for (CallPriority priority : CallPriority.values()) {
+            counters.put(priority, Counter.builder(GATEWAY_REJECTED)
+                    .description("Calls refused before being sent to the service")
+                    .tags("service", service, "priority", priority.name().toLowerCase(), "reason", reason)
+                    .register(registry));
+        }
+        return counters;
+    }
+
+    private GatewayRejectedException reject(CallPriority priority, String reason, Map<CallPriority, Counter> rejections) {
+        rejections.get(priority).increment();
+        return new GatewayRejectedException("Call to " + service + " refused (" + reason + ")");
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.concurrent.NamedThreadFactory;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Timeout, retries and circuit breaker around the calls to one external service.
+ * <p>
+ * Each attempt runs on a thread of the service and is abandoned (interrupted) after the timeout, so a hung call no longer
+ * blocks its caller. A failed attempt is retried up to maxAttempts times, after an exponential backoff with full jitter
+ * (a random wait between 0 and the backoff, so the retries of many callers do not arrive together). Calls refused by the
+ * circuit breaker, or not sent because the caller was interrupted, are not retried.
+ * </p>
+ * <p>
+ * The threads of the service are bounded by the size of the bulkhead placed in front of this class (see
+ * {@link DependencyGuard}) and are not queued : a call that ignores the interruption keeps its thread after the timeout,
+ * so a hung service can hold at most maxThreads threads, after which the calls are refused with a
+ * {@link GatewayRejectedException} (reason threads) until the hung calls return. The threads come from the given factory :
+ * virtual threads in VIRTUAL execution mode (see TourGuideExecutors#newCallThreadFactory), so a blocking library call does
+ * not pin an OS thread.
+ * </p>
+ * <p>
+ * Meters (tag service) : tourguide.gateway.timeouts, tourguide.gateway.retries, tourguide.gateway.short.circuited,
+ * tourguide.gateway.rejected (reason threads), tourguide.gateway.call.threads (threads running or holding a hung call)
+ * and tourguide.gateway.circuit.state (0 closed, 1 open, 2 half open).
+ * </p>
+ */
+@Log4j2
+public class DependencyResilience implements AutoCloseable {
+
+    public static final String GATEWAY_TIMEOUTS = "tourguide.gateway.timeouts";
+    public static final String GATEWAY_RETRIES = "tourguide.gateway.retries";
+    public static final String GATEWAY_SHORT_CIRCUITED = "tourguide.gateway.short.circuited";
+    public static final String GATEWAY_CIRCUIT_STATE = "tourguide.gateway.circuit.state";
+    public static final String GATEWAY_CALL_THREADS = "tourguide.gateway.call.threads";
+
+    private final String service;
+    private final long timeoutNanos;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final CircuitBreaker circuitBreaker;
+    // threads des appels (abandonnés après le délai maximum), sans file d'attente : refus quand tous sont occupés.
+    private final ThreadPoolExecutor callExecutor;
+    private final Counter timeouts;
+    private final Counter retries;
+    private final Counter shortCircuited;
+    private final Map<CallPriority, Counter> threadRejections;
+
+    /**
+     * Resilience whose calls run on platform threads.
+     *
+     * @param service    the name of the service (gps, reward, pricing).
+     * @param resilience the settings of the service.
+     * @param maxThreads the maximum number of threads calling the service (the size of its bulkhead).
+     * @param registry   the registry of the meters.
+     */
+    public DependencyResilience(String service, GatewayProperties.Resilience resilience, int maxThreads,
+            MeterRegistry registry) {
+        this(service, resilience, maxThreads, new NamedThreadFactory(service + "-call"), registry);
+    }
+
+    /**
+     * @param service       the name of the service (gps, reward, pricing).
+     * @param resilience    the settings of the service.
+     * @param maxThreads    the maximum number of threads calling the service (the size of its bulkhead).
+     * @param threadFactory the factory of the threads running the calls.
+     * @param registry      the registry of the meters.
+     */
+    public DependencyResilience(String service, GatewayProperties.Resilience resilience, int maxThreads,
+            ThreadFactory threadFactory, MeterRegistry registry) {
+        if (resilience.getMaxAttempts() < 1 || maxThreads < 1) {
+            throw new IllegalArgumentException("maxAttempts and maxThreads must be at least 1 for " + service);
+        }
+        this.service = service;
+        this.timeoutNanos = resilience.getTimeout().toNanos();
+        this.maxAttempts = resilience.getMaxAttempts();
+        this.initialBackoffNanos = resilience.getInitialBackoff().toNanos();
+        this.maxBackoffNanos = resilience.getMaxBackoff().toNanos();
+        this.circuitBreaker = new CircuitBreaker(resilience.getFailureThreshold(), resilience.getOpenDuration().toNanos());
+        // threads créés à la demande et libérés après une minute d'inactivité.
+        this.callExecutor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.timeouts = Counter.builder(GATEWAY_TIMEOUTS).description("Calls abandoned after the timeout")
+                .tag("service", service).register(registry);
+        this.retries = Counter.builder(GATEWAY_RETRIES).description("Calls sent again after a failure")
+                .tag("service", service).register(registry);
+        this.shortCircuited = Counter.builder(GATEWAY_SHORT_CIRCUITED)
+                .description("Calls refused because the circuit breaker is open").tag("service", service).register(registry);
+        this.threadRejections = DependencyGuard.rejectedCounters(service, "threads", registry);
+        Gauge.builder(GATEWAY_CALL_THREADS, callExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Threads running a call or still held by a call abandoned after the timeout")
+                .tag("service", service).register(registry);
+        Gauge.builder(GATEWAY_CIRCUIT_STATE, circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("State of the circuit breaker (0 closed, 1 open, 2 half open)").tag("service", service)
+                .register(registry);
+    }
+
+    /**
+     * Runs a call with timeout, retries and circuit breaker.
+     *
+     * @param call the call.
+     * @return the result of the call.
+     * @throws GatewayUnavailableException if the circuit is open.
+     * @throws GatewayException            if the last attempt failed.
+     */
+    public <T> T call(Supplier<T> call) {
+        RuntimeException lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (!circuitBreaker.tryAcquire()) {
+                shortCircuited.increment();
+                throw new GatewayUnavailableException("Circuit of " + service + " is open"
+                        + (lastError != null ? " (last error : " + lastError.getMessage() + ")" : ""));
+            }
+            if (attempt > 1) {
+                retries.increment();
+            }
+            try {
+                T result = attempt(call);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (GatewayRejectedException e) {
+                // appel non envoyé : ni nouvel essai, ni effet sur le disjoncteur.
+                circuitBreaker.onIgnored();
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                lastError = e;
+                if (attempt < maxAttempts && !backoff(attempt)) {
+                    break;
+                }
+            }
+        }
+        throw lastError instanceof GatewayException gatewayException ? gatewayException
+                : new GatewayException("Call to " + service + " failed : " + lastError, lastError);
+    }
+
+    /**
+     * @return the state of the circuit breaker.
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public void close() {
+        callExecutor.shutdownNow();
+    }
+
+    private <T> T attempt(Supplier<T> call) {
+        Future<T> future;
+        try {
+            future = callExecutor.submit(call::get);
+        } catch (RejectedExecutionException e) {
+            // tous les threads sont pris par des appels bloqués (ou le service est arrêté) : appel non envoyé.
+            threadRejections.get(CallPriority.current()).increment();
+            throw new GatewayRejectedException("Call to " + service + " refused (threads)");
+        }
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            throw new GatewayException("Call to " + service + " timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos)
+                    + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException
+                    : new GatewayException("Call to " + service + " failed", e.getCause());
+        } catch (CancellationException e) {
+            throw new GatewayException("Call to " + service + " cancelled", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new GatewayRejectedException("Interrupted while calling " + service);
+        }
+    }
+
+    // attente exponentielle avec gigue complète : entre 0 et initialBackoff * 2^(attempt - 1), plafonnée.
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        long wait = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.gateway;
+
+/**
+ * Failure of a call to an external service.
+ */
+public class GatewayException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GatewayException(String message) {
+        super(message);
+    }
+
+    public GatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
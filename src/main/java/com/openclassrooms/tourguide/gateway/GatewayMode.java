@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.gateway;
+
+/**
+ * Implementation of the gateways to the external services.
+ */
+public enum GatewayMode {
+
+    /**
+     * The gpsUtil, RewardCentral and TripPricer libraries (random latencies).
+     */
+    LIBRARY,
+
+    /**
+     * Local stand-ins with a configurable latency, error rate and throughput (reproducible load tests).
+     */
+    SIMULATED
+
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.tourguide.gateway;
+
+/**
+ * Call to an external service refused before being sent : no free slot in the bulkhead or no token in the rate limit
+ * within the maximum wait.
+ */
+public class GatewayRejectedException extends GatewayException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GatewayRejectedException(String message) {
+        super(message);
+    }
+
+}
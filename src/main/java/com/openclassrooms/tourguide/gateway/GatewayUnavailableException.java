@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.gateway;
+
+/**
+ * Call to an external service refused because its circuit breaker is open (the service failed repeatedly).
+ */
+public class GatewayUnavailableException extends GatewayException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+
+}
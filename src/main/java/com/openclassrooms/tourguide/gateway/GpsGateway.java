@@ -0,0 +1,55 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Access to the geolocation service (gpsUtil library or simulated stand-in).
+ */
+public interface GpsGateway {
+
+    /**
+     * Returns the current location of a user.
+     *
+     * @param userId the user.
+     * @return the location with the time it was taken.
+     */
+    VisitedLocation getUserLocation(UUID userId);
+
+    /**
+     * Returns the current location of several users in one call.
+     * <p>
+     * The default implementation locates the users one by one. A provider with a bulk request, or an adapter able to call
+     * the provider concurrently, overrides it. A user that cannot be located is missing from the result, the others are
+     * still returned.
+     * </p>
+     *
+     * @param userIds the users.
+     * @return the locations by userId.
+     */
+    default Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        Map<UUID, VisitedLocation> locations = new HashMap<>();
+        for (UUID userId : userIds) {
+            try {
+                locations.put(userId, getUserLocation(userId));
+            } catch (RuntimeException e) {
+                // l'utilisateur est absent du résultat, les autres sont localisés.
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Returns the attraction catalogue.
+     *
+     * @return the list of attractions.
+     */
+    List<Attraction> getAttractions();
+
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+
+/**
+ * {@link GpsGateway} calling the gpsUtil library.
+ * <p>
+ * gpsUtil has no bulk request : with an executor, {@link #getUserLocations(Collection)} calls it for several users at the
+ * same time, with a bounded number of calls in flight. The executor must not be the one of the calling thread.
+ * </p>
+ */
+public class GpsUtilGateway implements GpsGateway {
+
+    private final GpsUtil gpsUtil;
+    // pool des appels d'un lot (null = appels un par un).
+    private final Executor executor;
+    private final int maxConcurrentCalls;
+
+    public GpsUtilGateway(GpsUtil gpsUtil) {
+        this(gpsUtil, null, 1);
+    }
+
+    /**
+     * @param gpsUtil            the library.
+     * @param executor           the pool running the calls of a batch.
+     * @param maxConcurrentCalls the maximum number of calls in flight for a batch.
+     */
+    public GpsUtilGateway(GpsUtil gpsUtil, Executor executor, int maxConcurrentCalls) {
+        this.gpsUtil = gpsUtil;
+        this.executor = executor;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return gpsUtil.getUserLocation(userId);
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        if (executor == null || userIds.size() < 2) {
+            return GpsGateway.super.getUserLocations(userIds);
+        }
+        Map<UUID, VisitedLocation> locations = new ConcurrentHashMap<>();
+        InFlightLimiter inFlight = new InFlightLimiter(maxConcurrentCalls);
+        try {
+            for (UUID userId : userIds) {
+                inFlight.acquire();
+                CompletableFuture.runAsync(() -> locations.put(userId, gpsUtil.getUserLocation(userId)), executor)
+                        // un utilisateur non localisé est absent du résultat.
+                        .whenComplete((result, error) -> inFlight.release());
+            }
+            inFlight.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while locating users", e);
+        }
+        return locations;
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return gpsUtil.getAttractions();
+    }
+
+}
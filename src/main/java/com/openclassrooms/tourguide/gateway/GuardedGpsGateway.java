@@ -0,0 +1,85 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+
+/**
+ * {@link GpsGateway} sending the calls of another one through a {@link DependencyGuard}.
+ * <p>
+ * Without executor, the delegate has a bulk request and a batch counts as one call. With an executor (provider without bulk
+ * request), a batch is sent as one call per user, in parallel with a bounded number of calls in flight : each call takes its
+ * own slot and token, so a batch weighs on the limits as much as the calls it sends. The executor must not be the one of the
+ * calling thread.
+ * </p>
+ */
+public class GuardedGpsGateway implements GpsGateway {
+
+    private final GpsGateway delegate;
+    private final DependencyGuard guard;
+    // pool des appels d'un lot (null = un seul appel au délégué pour le lot).
+    private final Executor executor;
+    private final int maxConcurrentCalls;
+
+    public GuardedGpsGateway(GpsGateway delegate, DependencyGuard guard) {
+        this(delegate, guard, null, 1);
+    }
+
+    /**
+     * @param delegate           the gateway called.
+     * @param guard              the limits of the service.
+     * @param executor           the pool running the calls of a batch.
+     * @param maxConcurrentCalls the maximum number of calls in flight for a batch.
+     */
+    public GuardedGpsGateway(GpsGateway delegate, DependencyGuard guard, Executor executor, int maxConcurrentCalls) {
+        this.delegate = delegate;
+        this.guard = guard;
+        this.executor = executor;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return guard.call(() -> delegate.getUserLocation(userId));
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        if (executor == null) {
+            return guard.call(() -> delegate.getUserLocations(userIds));
+        }
+        // les appels du lot gardent la priorité du demandeur.
+        CallPriority priority = CallPriority.current();
+        Map<UUID, VisitedLocation> locations = new ConcurrentHashMap<>();
+        InFlightLimiter inFlight = new InFlightLimiter(maxConcurrentCalls);
+        try {
+            for (UUID userId : userIds) {
+                inFlight.acquire();
+                CompletableFuture.runAsync(() -> locations.put(userId,
+                        CallPriority.callWith(priority, () -> getUserLocation(userId))), executor)
+                        // un utilisateur non localisé (ou refusé par les limites) est absent du résultat.
+                        .whenComplete((result, error) -> inFlight.release());
+            }
+            inFlight.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while locating users", e);
+        }
+        return locations;
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return guard.call(delegate::getAttractions);
+    }
+
+}
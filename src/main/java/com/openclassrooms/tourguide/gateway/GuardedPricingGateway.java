@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+/**
+ * {@link PricingGateway} sending the calls of another one through a {@link DependencyGuard}.
+ */
+public class GuardedPricingGateway implements PricingGateway {
+
+    private final PricingGateway delegate;
+    private final DependencyGuard guard;
+
+    public GuardedPricingGateway(PricingGateway delegate, DependencyGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+            int rewardsPoints) {
+        return guard.call(() -> delegate.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+
+/**
+ * {@link RewardGateway} sending the calls of another one through a {@link DependencyGuard}.
+ * <p>
+ * Without executor, the delegate has a bulk request and a batch counts as one call. With an executor (provider without bulk
+ * request), a batch is sent as one call per pair, in parallel with a bounded number of calls in flight : each call takes its
+ * own slot and token. The executor must not be the one of the calling thread.
+ * </p>
+ */
+public class GuardedRewardGateway implements RewardGateway {
+
+    private final RewardGateway delegate;
+    private final DependencyGuard guard;
+    // pool des appels d'un lot (null = un seul appel au délégué pour le lot).
+    private final Executor executor;
+    private final int maxConcurrentCalls;
+
+    public GuardedRewardGateway(RewardGateway delegate, DependencyGuard guard) {
+        this(delegate, guard, null, 1);
+    }
+
+    /**
+     * @param delegate           the gateway called.
+     * @param guard              the limits of the service.
+     * @param executor           the pool running the calls of a batch.
+     * @param maxConcurrentCalls the maximum number of calls in flight for a batch.
+     */
+    public GuardedRewardGateway(RewardGateway delegate, DependencyGuard guard, Executor executor, int maxConcurrentCalls) {
+        this.delegate = delegate;
+        this.guard = guard;
+        this.executor = executor;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return guard.call(() -> delegate.getAttractionRewardPoints(attractionId, userId));
+    }
+
+    @Override
+    public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        if (executor == null) {
+            return guard.call(() -> delegate.getAttractionRewardPoints(requests));
+        }
+        // les appels du lot gardent la priorité du demandeur.
+        CallPriority priority = CallPriority.current();
+        Map<RewardRequest, Integer> points = new ConcurrentHashMap<>();
+        InFlightLimiter inFlight = new InFlightLimiter(maxConcurrentCalls);
+        try {
+            for (RewardRequest request : requests) {
+                inFlight.acquire();
+                CompletableFuture.runAsync(() -> points.put(request, CallPriority.callWith(priority,
+                        () -> getAttractionRewardPoints(request.attractionId(), request.userId()))), executor)
+                        // une paire en erreur (ou refusée par les limites) est absente du résultat.
+                        .whenComplete((result, error) -> inFlight.release());
+            }
+            inFlight.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while getting reward points", e);
+        }
+        return points;
+    }
+
+}
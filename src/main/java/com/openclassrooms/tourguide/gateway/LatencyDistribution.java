@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of the latency of a simulated call, between a minimum and a maximum.
+ */
+public enum LatencyDistribution {
+
+    /**
+     * Always the minimum latency.
+     */
+    FIXED {
+        @Override
+        long nextNanos(SplittableRandom random, long minNanos, long maxNanos) {
+            return minNanos;
+        }
+    },
+
+    /**
+     * Uniform between the minimum and the maximum (as the libraries).
+     */
+    UNIFORM {
+        @Override
+        long nextNanos(SplittableRandom random, long minNanos, long maxNanos) {
+            return maxNanos <= minNanos ? minNanos : minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+        }
+    },
+
+    /**
+     * Minimum plus an exponential delay (mean = a quarter of the range), capped at the maximum : most calls are fast,
+     * a few are slow.
+     */
+    EXPONENTIAL {
+        @Override
+        long nextNanos(SplittableRandom random, long minNanos, long maxNanos) {
+            double mean = (maxNanos - minNanos) / 4.0;
+            long delay = (long) (-mean * Math.log(1 - random.nextDouble()));
+            return Math.min(maxNanos, minNanos + delay);
+        }
+    };
+
+    // tire une latence en nanosecondes.
+    abstract long nextNanos(SplittableRandom random, long minNanos, long maxNanos);
+
+}
@@ -0,0 +1,108 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openclassrooms.tourguide.config.GatewayProperties;
+
+/**
+ * Simulates the behaviour of an external service for the simulated gateways : throughput cap, latency, errors.
+ * <p>
+ * The latency and the error of a call are drawn from a generator derived from the seed, the request (operation and key) and
+ * the number of previous calls of this request : no generator is shared between the threads, the n-th call of a request
+ * draws the same values whatever the order of the calls of the other requests, so two runs with the same settings are
+ * reproducible, and a request that failed can succeed on its next attempt. One counter is kept per distinct request.
+ * </p>
+ */
+public class LatencySimulator {
+
+    private final String name;
+    private final LatencyDistribution distribution;
+    private final long minNanos;
+    private final long maxNanos;
+    private final double errorRate;
+    // intervalle minimum entre deux appels (0 = pas de limite de débit).
+    private final long intervalNanos;
+    private final long seed;
+    // date (System.nanoTime) du prochain créneau libre pour la limite de débit.
+    private final AtomicLong nextSlot = new AtomicLong(Long.MIN_VALUE);
+    // nombre d'appels déjà faits par demande (empreinte de l'opération et de la clé).
+    private final ConcurrentMap<Long, Long> callCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param name       the name of the simulated service (error messages).
+     * @param simulation the settings.
+     */
+    public LatencySimulator(String name, GatewayProperties.Simulation simulation) {
+        if (simulation.getErrorRate() < 0 || simulation.getErrorRate() > 1) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1 : " + simulation.getErrorRate());
+        }
+        this.name = name;
+        this.distribution = simulation.getDistribution();
+        this.minNanos = simulation.getMinLatency().toNanos();
+        this.maxNanos = Math.max(minNanos, simulation.getMaxLatency().toNanos());
+        this.errorRate = simulation.getErrorRate();
+        this.intervalNanos = simulation.getMaxCallsPerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1) / simulation.getMaxCallsPerSecond()
+                : 0;
+        this.seed = simulation.getSeed();
+    }
+
+    /**
+     * Waits for a free slot (throughput cap), waits for the simulated latency, then fails randomly according to the error rate.
+     *
+     * @param operation the name of the operation (error messages).
+     * @param key       the inputs of the request.
+     * @throws GatewayException for a simulated error.
+     */
+    public void call(String operation, Object key) {
+        throttle();
+        SplittableRandom random = newRandom(operation, key);
+        long latency = distribution.nextNanos(random, minNanos, maxNanos);
+        boolean failure = errorRate > 0 && random.nextDouble() < errorRate;
+        sleepNanos(latency);
+        if (failure) {
+            throw new GatewayException("Simulated failure of " + name + "." + operation);
+        }
+    }
+
+    /**
+     * Returns a generator for one call of a request, also used for the simulated data.
+     *
+     * @param operation the name of the operation.
+     * @param key       the inputs of the request.
+     * @return a generator derived from the seed, the request and the number of previous calls of the request.
+     */
+    public SplittableRandom newRandom(String operation, Object key) {
+        long request = (long) operation.hashCode() << 32 | (Objects.hashCode(key) & 0xFFFFFFFFL);
+        // générateur propre à l'appel : pas de contention entre les threads, tirage indépendant de l'ordre des autres demandes.
+        long sequence = callCounts.merge(request, 1L, Long::sum);
+        return new SplittableRandom(seed ^ request * 0x9E3779B97F4A7C15L ^ sequence * 0xBF58476D1CE4E5B9L);
+    }
+
+    // réserve le prochain créneau puis attend qu'il arrive.
+    private void throttle() {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAccumulate(now, (next, time) -> Math.max(next, time) + intervalNanos);
+        sleepNanos(Math.max(slot, now) - now);
+    }
+
+    private static void sleepNanos(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while waiting for the simulated service", e);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * {@link GpsGateway} timing the calls of another one.
+ */
+public class MeteredGpsGateway implements GpsGateway {
+
+    private final GpsGateway delegate;
+    private final TourGuideMetrics metrics;
+
+    public MeteredGpsGateway(GpsGateway delegate, TourGuideMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return metrics.recordGatewayCall("gps", "getUserLocation", () -> delegate.getUserLocation(userId));
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        return metrics.recordGatewayCall("gps", "getUserLocations", () -> delegate.getUserLocations(userIds));
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return metrics.recordGatewayCall("gps", "getAttractions", delegate::getAttractions);
+    }
+
+}
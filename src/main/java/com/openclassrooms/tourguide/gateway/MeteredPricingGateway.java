@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * {@link PricingGateway} timing the calls of another one.
+ */
+public class MeteredPricingGateway implements PricingGateway {
+
+    private final PricingGateway delegate;
+    private final TourGuideMetrics metrics;
+
+    public MeteredPricingGateway(PricingGateway delegate, TourGuideMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+            int rewardsPoints) {
+        return metrics.recordGatewayCall("pricing", "getPrice",
+                () -> delegate.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+
+}
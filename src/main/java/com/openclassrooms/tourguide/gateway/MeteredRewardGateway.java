@@ -0,0 +1,34 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * {@link RewardGateway} timing the calls of another one.
+ */
+public class MeteredRewardGateway implements RewardGateway {
+
+    private final RewardGateway delegate;
+    private final TourGuideMetrics metrics;
+
+    public MeteredRewardGateway(RewardGateway delegate, TourGuideMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return metrics.recordGatewayCall("reward", "getAttractionRewardPoints",
+                () -> delegate.getAttractionRewardPoints(attractionId, userId));
+    }
+
+    @Override
+    public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        return metrics.recordGatewayCall("reward", "getAttractionRewardPointsBatch",
+                () -> delegate.getAttractionRewardPoints(requests));
+    }
+
+}
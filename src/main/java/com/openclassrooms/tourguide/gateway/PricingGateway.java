@@ -0,0 +1,26 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+/**
+ * Access to the trip pricing service (TripPricer library or simulated stand-in).
+ */
+public interface PricingGateway {
+
+    /**
+     * Returns the trip offers of the providers.
+     *
+     * @param apiKey        the key of the pricing service.
+     * @param attractionId  the identifier sent to the providers (the user id in TourGuide).
+     * @param adults        the number of adults.
+     * @param children      the number of children.
+     * @param nightsStay    the duration of the trip.
+     * @param rewardsPoints the reward points of the user (discount).
+     * @return the offers.
+     */
+    List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay, int rewardsPoints);
+
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * {@link GpsGateway} sending the calls of another one with the timeout, retries and circuit breaker of a
+ * {@link DependencyResilience} (a batch counts as one call).
+ */
+public class ResilientGpsGateway implements GpsGateway {
+
+    private final GpsGateway delegate;
+    private final DependencyResilience resilience;
+
+    public ResilientGpsGateway(GpsGateway delegate, DependencyResilience resilience) {
+        this.delegate = delegate;
+        this.resilience = resilience;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return resilience.call(() -> delegate.getUserLocation(userId));
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        return resilience.call(() -> delegate.getUserLocations(userIds));
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return resilience.call(delegate::getAttractions);
+    }
+
+}
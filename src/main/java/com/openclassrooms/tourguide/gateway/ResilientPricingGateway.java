@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+/**
+ * {@link PricingGateway} sending the calls of another one with the timeout, retries and circuit breaker of a
+ * {@link DependencyResilience}.
+ */
+public class ResilientPricingGateway implements PricingGateway {
+
+    private final PricingGateway delegate;
+    private final DependencyResilience resilience;
+
+    public ResilientPricingGateway(PricingGateway delegate, DependencyResilience resilience) {
+        this.delegate = delegate;
+        this.resilience = resilience;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+            int rewardsPoints) {
+        return resilience.call(() -> delegate.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link RewardGateway} sending the calls of another one with the timeout, retries and circuit breaker of a
+ * {@link DependencyResilience} (a batch counts as one call).
+ */
+public class ResilientRewardGateway implements RewardGateway {
+
+    private final RewardGateway delegate;
+    private final DependencyResilience resilience;
+
+    public ResilientRewardGateway(RewardGateway delegate, DependencyResilience resilience) {
+        this.delegate = delegate;
+        this.resilience = resilience;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return resilience.call(() -> delegate.getAttractionRewardPoints(attractionId, userId));
+    }
+
+    @Override
+    public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        return resilience.call(() -> delegate.getAttractionRewardPoints(requests));
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+
+/**
+ * {@link RewardGateway} calling the RewardCentral library.
+ * <p>
+ * RewardCentral has no bulk request : with an executor, {@link #getAttractionRewardPoints(Collection)} calls it for several
+ * pairs at the same time, with a bounded number of calls in flight. The executor must not be the one of the calling thread.
+ * </p>
+ */
+public class RewardCentralGateway implements RewardGateway {
+
+    private final RewardCentral rewardCentral;
+    // pool des appels d'un lot (null = appels un par un).
+    private final Executor executor;
+    private final int maxConcurrentCalls;
+
+    public RewardCentralGateway(RewardCentral rewardCentral) {
+        this(rewardCentral, null, 1);
+    }
+
+    /**
+     * @param rewardCentral      the library.
+     * @param executor           the pool running the calls of a batch.
+     * @param maxConcurrentCalls the maximum number of calls in flight for a batch.
+     */
+    public RewardCentralGateway(RewardCentral rewardCentral, Executor executor, int maxConcurrentCalls) {
+        this.rewardCentral = rewardCentral;
+        this.executor = executor;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return rewardCentral.getAttractionRewardPoints(attractionId, userId);
+    }
+
+    @Override
+    public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        if (executor == null || requests.size() < 2) {
+            return RewardGateway.super.getAttractionRewardPoints(requests);
+        }
+        Map<RewardRequest, Integer> points = new ConcurrentHashMap<>();
+        InFlightLimiter inFlight = new InFlightLimiter(maxConcurrentCalls);
+        try {
+            for (RewardRequest request : requests) {
+                inFlight.acquire();
+                CompletableFuture.runAsync(() -> points.put(request,
+                        rewardCentral.getAttractionRewardPoints(request.attractionId(), request.userId())), executor)
+                        // une paire en erreur est absente du résultat.
+                        .whenComplete((result, error) -> inFlight.release());
+            }
+            inFlight.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while getting reward points", e);
+        }
+        return points;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Access to the reward points service (RewardCentral library or simulated stand-in).
+ */
+public interface RewardGateway {
+
+    /**
+     * Returns the number of points earned by a user for visiting an attraction.
+     *
+     * @param attractionId the attraction.
+     * @param userId       the user.
+     * @return the number of points.
+     */
+    int getAttractionRewardPoints(UUID attractionId, UUID userId);
+
+    /**
+     * Returns the points of several (attraction, user) pairs in one call.
+     * <p>
+     * The default implementation calls the service once per pair. A provider with a bulk request, or an adapter able to call
+     * the provider concurrently, overrides it. A pair whose points cannot be obtained is missing from the result, the others
+     * are still returned.
+     * </p>
+     *
+     * @param requests the pairs.
+     * @return the points by pair.
+     */
+    default Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        Map<RewardRequest, Integer> points = new HashMap<>();
+        for (RewardRequest request : requests) {
+            try {
+                points.put(request, getAttractionRewardPoints(request.attractionId(), request.userId()));
+            } catch (RuntimeException e) {
+                // la paire est absente du résultat, les autres sont calculées.
+            }
+        }
+        return points;
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.UUID;
+
+/**
+ * One reward points lookup : an attraction for a user.
+ *
+ * @param attractionId the attraction.
+ * @param userId       the user.
+ */
+public record RewardRequest(UUID attractionId, UUID userId) {
+}
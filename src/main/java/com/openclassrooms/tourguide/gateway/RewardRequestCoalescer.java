@@ -0,0 +1,184 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.openclassrooms.tourguide.concurrent.NamedThreadFactory;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Collects the reward points requests arriving within a short window and resolves them with one batch call to the
+ * {@link RewardGateway}.
+ * <p>
+ * A batch is sent when the window opened by its first request ends, or as soon as it reaches the maximum batch size. The
+ * same pair requested twice in a batch is looked up once. The batches are sent by a small pool, so the number of batches in
+ * flight (and so the load on the provider) is bounded whatever the number of callers.
+ * </p>
+ * <p>
+ * A batch is sent with the {@link CallPriority#INTERACTIVE} priority as soon as one of its requests comes from an
+ * interactive thread. The callers get a future, completed when the batch returns, or completed with a {@link GatewayException} if the points of
+ * their pair could not be obtained.
+ * </p>
+ */
+@Log4j2
+public class RewardRequestCoalescer implements AutoCloseable {
+
+    // une demande en attente et le future de l'appelant.
+    private record Pending(RewardRequest request, CompletableFuture<Integer> future, CallPriority priority) {
+    }
+
+    private final RewardGateway rewardGateway;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    // déclenche l'envoi d'un lot à la fin de sa fenêtre.
+    private final ScheduledExecutorService timer;
+    // envoie les lots : sa taille borne le nombre de lots en cours.
+    private final ExecutorService dispatcher;
+
+    private final Object lock = new Object();
+    // lot en cours de constitution (protégé par lock).
+    private List<Pending> buffer = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param rewardGateway        the service resolving the batches.
+     * @param window               the time a request waits for others before its batch is sent.
+     * @param maxBatchSize         the maximum number of requests in a batch.
+     * @param maxConcurrentBatches the maximum number of batches in flight.
+     */
+    public RewardRequestCoalescer(RewardGateway rewardGateway, Duration window, int maxBatchSize, int maxConcurrentBatches) {
+        if (maxBatchSize < 1 || maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxBatchSize and maxConcurrentBatches must be at least 1 : " + maxBatchSize
+                    + ", " + maxConcurrentBatches);
+        }
+        this.rewardGateway = rewardGateway;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("reward-batch-timer"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timer = scheduler;
+        this.dispatcher = new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("reward-batch"));
+    }
+
+    /**
+     * Adds a request to the current batch.
+     *
+     * @param attractionId the attraction.
+     * @param userId       the user.
+     * @return a future completed with the number of points when the batch returns.
+     */
+    public CompletableFuture<Integer> submit(UUID attractionId, UUID userId) {
+        Pending pending = new Pending(new RewardRequest(attractionId, userId), new CompletableFuture<>(), CallPriority.current());
+        List<Pending> batch = null;
+        synchronized (lock) {
+            buffer.add(pending);
+            if (buffer.size() >= maxBatchSize) {
+                // lot complet : envoyé tout de suite.
+                batch = takeBuffer();
+            } else if (buffer.size() == 1) {
+                // première demande du lot : ouvre la fenêtre.
+                scheduledFlush = timer.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return pending.future();
+    }
+
+    /**
+     * Sends the current batch without waiting for the end of its window.
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = takeBuffer();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Sends the pending requests, then stops the threads once the batches in flight are done.
+     */
+    @Override
+    public void close() {
+        flush();
+        timer.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    // appelé sous lock.
+    private List<Pending> takeBuffer() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<Pending> batch = buffer;
+        buffer = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        try {
+            dispatcher.execute(() -> resolve(batch));
+        } catch (RuntimeException e) {
+            // coalesceur arrêté.
+            fail(batch, new GatewayException("Reward requests coalescer is closed", e));
+        }
+    }
+
+    private void resolve(List<Pending> batch) {
+        // une même paire demandée plusieurs fois dans le lot n'est calculée qu'une fois.
+        Map<RewardRequest, List<CompletableFuture<Integer>>> waiting = new HashMap<>();
+        // le lot est interactif dès qu'une de ses demandes l'est.
+        CallPriority priority = CallPriority.BACKGROUND;
+        for (Pending pending : batch) {
+            waiting.computeIfAbsent(pending.request(), request -> new ArrayList<>()).add(pending.future());
+            if (pending.priority() == CallPriority.INTERACTIVE) {
+                priority = CallPriority.INTERACTIVE;
+            }
+        }
+        Map<RewardRequest, Integer> points;
+        try {
+            points = CallPriority.callWith(priority, () -> rewardGateway.getAttractionRewardPoints(waiting.keySet()));
+        } catch (RuntimeException e) {
+            log.warn("Reward points batch of " + waiting.size() + " requests failed : " + e);
+            fail(batch, e);
+            return;
+        }
+        waiting.forEach((request, futures) -> {
+            Integer result = points.get(request);
+            for (CompletableFuture<Integer> future : futures) {
+                if (result != null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(new GatewayException("No reward points for attraction "
+                            + request.attractionId() + " and user " + request.userId()));
+                }
+            }
+        });
+    }
+
+    private static void fail(List<Pending> batch, Throwable error) {
+        for (Pending pending : batch) {
+            pending.future().completeExceptionally(error);
+        }
+    }
+
+}
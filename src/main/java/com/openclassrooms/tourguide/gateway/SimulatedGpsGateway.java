@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Simulated {@link GpsGateway} : random locations (same range as gpsUtil) after a simulated latency.
+ * <p>
+ * The attraction catalogue is loaded once and returned without latency, with stable attractionIds.
+ * </p>
+ * <p>
+ * {@link #getUserLocations(Collection)} simulates a bulk request : a single latency for the whole batch.
+ * </p>
+ */
+public class SimulatedGpsGateway implements GpsGateway {
+
+    // mêmes bornes que gpsUtil.
+    private static final double MAX_LATITUDE = 85.05112878;
+    private static final double MAX_LONGITUDE = 180;
+
+    private final LatencySimulator simulator;
+    private final List<Attraction> attractions;
+
+    /**
+     * @param simulator   the latency, errors and throughput of getUserLocation.
+     * @param attractions the attraction catalogue.
+     */
+    public SimulatedGpsGateway(LatencySimulator simulator, List<Attraction> attractions) {
+        this.simulator = simulator;
+        this.attractions = List.copyOf(attractions);
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        simulator.call("getUserLocation", userId);
+        return randomLocation(userId);
+    }
+
+    // position tirée d'un générateur propre à l'utilisateur et au numéro de l'appel : reproductible quel que soit l'ordre des threads.
+    private VisitedLocation randomLocation(UUID userId) {
+        SplittableRandom random = simulator.newRandom("location", userId);
+        double latitude = (random.nextDouble() * 2 - 1) * MAX_LATITUDE;
+        double longitude = (random.nextDouble() * 2 - 1) * MAX_LONGITUDE;
+        return new VisitedLocation(userId, new Location(latitude, longitude), new Date());
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        simulator.call("getUserLocations", userIds);
+        Map<UUID, VisitedLocation> locations = new HashMap<>();
+        for (UUID userId : userIds) {
+            locations.put(userId, randomLocation(userId));
+        }
+        return locations;
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+/**
+ * Simulated {@link PricingGateway} : 5 offers computed like TripPricer (price per adult and per child, per night, minus the
+ * reward points), from a generator seeded with the request so that the same request always gets the same offers.
+ */
+public class SimulatedPricingGateway implements PricingGateway {
+
+    // nombre d'offres retournées, comme TripPricer.
+    private static final int PROVIDER_NUMBER = 5;
+
+    private static final List<String> PROVIDER_NAMES = List.of("Holiday Travels", "Enterprize Ventures Limited",
+            "Sunny Days", "FlyAway Trips", "United Partners Vacations", "Dream Trips", "Live Free",
+            "Dancing Waves Cruselines and Partners", "AdventureCo", "Cure-Your-Blues");
+
+    private final LatencySimulator simulator;
+
+    public SimulatedPricingGateway(LatencySimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+            int rewardsPoints) {
+        simulator.call("getPrice", List.of(attractionId, adults, children, nightsStay, rewardsPoints));
+        Random random = new Random(attractionId.getMostSignificantBits() ^ attractionId.getLeastSignificantBits()
+                ^ ((long) adults << 48) ^ ((long) children << 32) ^ nightsStay);
+        List<Provider> providers = new ArrayList<>(PROVIDER_NUMBER);
+        for (int i = 0; i < PROVIDER_NUMBER; i++) {
+            int adultPrice = 100 + random.nextInt(600);
+            int childPrice = adultPrice / 3;
+            double price = Math.max(0, (adultPrice * adults + childPrice * children) * nightsStay + 0.99 - rewardsPoints);
+            String name = PROVIDER_NAMES.get(random.nextInt(PROVIDER_NAMES.size()));
+            UUID tripId = UUID.nameUUIDFromBytes((attractionId + name + i).getBytes(StandardCharsets.UTF_8));
+            providers.add(new Provider(tripId, name, price));
+        }
+        return providers;
+    }
+
+}
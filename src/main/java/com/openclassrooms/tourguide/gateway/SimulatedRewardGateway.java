@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Simulated {@link RewardGateway} : the points (1 to 1000, as RewardCentral) only depend on the attraction and the user,
+ * so the same pair always gets the same points.
+ * <p>
+ * {@link #getAttractionRewardPoints(Collection)} simulates a bulk request : a single latency for the whole batch.
+ * </p>
+ */
+public class SimulatedRewardGateway implements RewardGateway {
+
+    private static final int MAX_POINTS = 1000;
+
+    private final LatencySimulator simulator;
+
+    public SimulatedRewardGateway(LatencySimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        simulator.call("getAttractionRewardPoints", new RewardRequest(attractionId, userId));
+        return points(attractionId, userId);
+    }
+
+    @Override
+    public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+        simulator.call("getAttractionRewardPointsBatch", requests);
+        Map<RewardRequest, Integer> points = new HashMap<>();
+        for (RewardRequest request : requests) {
+            points.put(request, points(request.attractionId(), request.userId()));
+        }
+        return points;
+    }
+
+    private static int points(UUID attractionId, UUID userId) {
+        return 1 + Math.floorMod(Objects.hash(attractionId, userId), MAX_POINTS);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limit : the bucket fills at a fixed rate up to its capacity (burst), each call takes one token.
+ * <p>
+ * A part of the capacity is kept for the interactive calls : a background call only gets a token when more than this
+ * reserve remains, so the tracker can never empty the bucket before an interactive request.
+ * </p>
+ */
+class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final double interactiveReserve;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param callsPerSecond     the refill rate.
+     * @param burst              the capacity of the bucket.
+     * @param interactiveReserve the tokens that only the interactive calls can take.
+     */
+    TokenBucket(int callsPerSecond, int burst, int interactiveReserve) {
+        this.tokensPerNano = callsPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.interactiveReserve = Math.min(interactiveReserve, capacity - 1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if available.
+     *
+     * @param priority the priority of the call.
+     * @return 0 if a token was taken, otherwise the time in nanoseconds before one could be available.
+     */
+    synchronized long tryTake(CallPriority priority) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        double floor = priority == CallPriority.INTERACTIVE ? 0 : interactiveReserve;
+        if (tokens - 1 >= floor) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((floor + 1 - tokens) / tokensPerNano));
+    }
+
+}
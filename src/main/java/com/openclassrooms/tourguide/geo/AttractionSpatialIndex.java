@@ -0,0 +1,223 @@
+package com.openclassrooms.tourguide.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable spatial index over the attraction catalogue, built once from gpsUtil.getAttractions().
+ * <p>
+ * Attractions are stored in a grid of cells of {@value #CELL_SIZE_DEGREES} degree of latitude/longitude.
+ * A proximity query only computes the distance to the attractions of the cells that intersect
+ * the bounding box of the search circle, instead of every attraction of the catalogue.
+ * </p>
+ * <p>
+ * The distances are computed by a {@link DistanceKernel} built over the catalogue : the candidates are rejected on their
+ * bounding box, then compared by chord, without trigonometry per attraction.
+ * </p>
+ */
+public class AttractionSpatialIndex {
+
+    // taille d'une cellule de la grille en degrés.
+    static final double CELL_SIZE_DEGREES = 1.0;
+    // valeur arrondie par défaut (69.05 en réalité) pour que la boîte englobante soit toujours un peu plus grande que le cercle.
+    private static final double MILES_PER_DEGREE_OF_LATITUDE = 69.0;
+    // rayon de départ de la recherche des k plus proches, doublé tant que l'on n'a pas assez de candidats.
+    private static final double NEAREST_INITIAL_RADIUS_MILES = 50;
+    // au-delà de la moitié de la circonférence terrestre, tous les points sont dans le cercle.
+    private static final double HALF_EARTH_CIRCUMFERENCE_MILES = 12_450;
+
+    private static final int LATITUDE_CELLS = (int) Math.ceil(180 / CELL_SIZE_DEGREES);
+    private static final int LONGITUDE_CELLS = (int) Math.ceil(360 / CELL_SIZE_DEGREES);
+
+    private final List<Attraction> attractions;
+    // indices des attractions de chaque cellule.
+    private final Map<Integer, int[]> cells = new HashMap<>();
+    private final int[] allIndices;
+    private final DistanceKernel kernel;
+
+    /**
+     * @param attractions the attraction catalogue.
+     */
+    public AttractionSpatialIndex(List<Attraction> attractions) {
+        this.attractions = List.copyOf(attractions);
+        this.kernel = new DistanceKernel(this.attractions);
+        this.allIndices = IntStream.range(0, this.attractions.size()).toArray();
+        Map<Integer, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < this.attractions.size(); i++) {
+            Attraction attraction = this.attractions.get(i);
+            grouped.computeIfAbsent(cellOf(latitudeCell(attraction.latitude), longitudeCell(attraction.longitude)),
+                    key -> new ArrayList<>()).add(i);
+        }
+        grouped.forEach((cell, indices) -> cells.put(cell, indices.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * @return all the attractions of the index.
+     */
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    /**
+     * @return the distance kernel of the attractions (same indices as {@link #getAttractions()}).
+     */
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Returns the attractions at a distance less than or equal to radiusMiles from the location.
+     *
+     * @param location    the reference position.
+     * @param radiusMiles the radius of the search in miles.
+     * @return the attractions in the circle (in no particular order).
+     */
+    public List<Attraction> withinRadius(Location location, double radiusMiles) {
+        return withinRadius(location.latitude, location.longitude, radiusMiles);
+    }
+
+    /**
+     * Same as {@link #withinRadius(Location, double)} for a position given by its coordinates (no Location object needed).
+     *
+     * @param latitude    the latitude of the reference position.
+     * @param longitude   the longitude of the reference position.
+     * @param radiusMiles the radius of the search in miles.
+     * @return the attractions in the circle (in no particular order).
+     */
+    public List<Attraction> withinRadius(double latitude, double longitude, double radiusMiles) {
+        DistanceKernel.Search search = kernel.search(latitude, longitude, radiusMiles);
+        List<Attraction> result = new ArrayList<>();
+        for (int i : candidates(latitude, longitude, radiusMiles)) {
+            // même règle que RewardsService.nearAttraction : "pas plus loin que".
+            if (search.contains(i)) {
+                result.add(attractions.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the k attractions closest to the location, sorted from the nearest to the farthest.
+     * <p>
+     * The radius of the search is doubled until at least k attractions are in the circle : all the attractions of the circle
+     * are then known, so the k nearest of the circle are the k nearest of the catalogue.
+     * Only the k best candidates are kept (bounded heap) instead of sorting all the attractions.
+     * </p>
+     *
+     * @param location the reference position.
+     * @param k        the maximum number of attractions.
+     * @return at most k attractions.
+     */
+    public List<Attraction> nearest(Location location, int k) {
+        int wanted = Math.min(k, attractions.size());
+        if (wanted <= 0) {
+            return List.of();
+        }
+        double radiusMiles = NEAREST_INITIAL_RADIUS_MILES;
+        while (true) {
+            // tas borné à k éléments, la plus grande distance en tête pour pouvoir être remplacée.
+            // les cordes sont dans le même ordre que les distances : pas de conversion en miles.
+            PriorityQueue<Neighbour> heap = new PriorityQueue<>(wanted,
+                    Comparator.comparingDouble(Neighbour::chordSquared).reversed());
+            DistanceKernel.Search search = kernel.search(location, radiusMiles);
+            int inCircle = 0;
+            for (int i : candidates(location.latitude, location.longitude, radiusMiles)) {
+                if (!search.inBoundingBox(i)) {
+                    continue;
+                }
+                double chordSquared = search.chordSquared(i);
+                if (chordSquared > search.chordSquaredLimit()) {
+                    continue;
+                }
+                inCircle++;
+                if (heap.size() < wanted) {
+                    heap.add(new Neighbour(i, chordSquared));
+                } else if (chordSquared < heap.peek().chordSquared()) {
+                    heap.poll();
+                    heap.add(new Neighbour(i, chordSquared));
+                }
+            }
+            if (inCircle >= wanted || radiusMiles >= HALF_EARTH_CIRCUMFERENCE_MILES) {
+                // le tas se vide de la plus lointaine à la plus proche.
+                Attraction[] result = new Attraction[heap.size()];
+                for (int i = result.length - 1; i >= 0; i--) {
+                    result[i] = attractions.get(heap.poll().index());
+                }
+                return List.of(result);
+            }
+            radiusMiles *= 2;
+        }
+    }
+
+    // une attraction candidate (indice) et sa corde, calculée une seule fois.
+    private record Neighbour(int index, double chordSquared) {
+    }
+
+    /**
+     * Returns the indices of the attractions of the cells intersecting the bounding box of the circle.
+     */
+    private int[] candidates(double latitude, double longitude, double radiusMiles) {
+        if (radiusMiles >= HALF_EARTH_CIRCUMFERENCE_MILES) {
+            return allIndices;
+        }
+        double latitudeDelta = radiusMiles / MILES_PER_DEGREE_OF_LATITUDE;
+        double minLatitude = Math.max(-90, latitude - latitudeDelta);
+        double maxLatitude = Math.min(90, latitude + latitudeDelta);
+
+        // la largeur d'un degré de longitude diminue avec la latitude : on prend la latitude la plus proche du pôle.
+        double cosLatitude = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double longitudeDelta = cosLatitude <= 0 ? 180 : latitudeDelta / cosLatitude;
+
+        int firstLatitudeCell = latitudeCell(minLatitude);
+        int lastLatitudeCell = latitudeCell(maxLatitude);
+        int longitudeCellCount;
+        int firstLongitudeCell;
+        if (longitudeDelta >= 180) {
+            firstLongitudeCell = 0;
+            longitudeCellCount = LONGITUDE_CELLS;
+        } else {
+            firstLongitudeCell = longitudeCell(longitude - longitudeDelta);
+            longitudeCellCount = Math.min(LONGITUDE_CELLS,
+                    Math.floorMod(longitudeCell(longitude + longitudeDelta) - firstLongitudeCell, LONGITUDE_CELLS) + 1);
+        }
+
+        int[] result = new int[16];
+        int count = 0;
+        for (int latitudeCell = firstLatitudeCell; latitudeCell <= lastLatitudeCell; latitudeCell++) {
+            for (int i = 0; i < longitudeCellCount; i++) {
+                // le modulo gère le passage de l'antiméridien (180° / -180°).
+                int[] cell = cells.get(cellOf(latitudeCell, Math.floorMod(firstLongitudeCell + i, LONGITUDE_CELLS)));
+                if (cell != null) {
+                    if (count + cell.length > result.length) {
+                        result = Arrays.copyOf(result, Math.max(result.length * 2, count + cell.length));
+                    }
+                    System.arraycopy(cell, 0, result, count, cell.length);
+                    count += cell.length;
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int latitudeCell(double latitude) {
+        return Math.min(LATITUDE_CELLS - 1, (int) Math.floor((latitude + 90) / CELL_SIZE_DEGREES));
+    }
+
+    private static int longitudeCell(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / CELL_SIZE_DEGREES), LONGITUDE_CELLS);
+    }
+
+    private static int cellOf(int latitudeCell, int longitudeCell) {
+        return latitudeCell * LONGITUDE_CELLS + longitudeCell;
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.openclassrooms.tourguide.geo;
+
+import java.util.List;
+
+import gpsUtil.location.Location;
+
+/**
+ * Distances from any position to a fixed set of points (the attraction catalogue), with the trigonometry of the points
+ * computed once.
+ * <p>
+ * Each point is stored as a unit vector (x, y, z) in flat arrays. The distance to a position only needs the vector of the
+ * position, three differences and a square root : the squared chord between the two vectors is 4 times the haversine, so
+ * the result is the haversine distance, stable for identical and close points. Comparing chords (no asin) is enough to
+ * rank points or to test a radius.
+ * </p>
+ * <p>
+ * A {@link Search} first rejects the points outside the latitude / longitude bounding box of its circle, without any
+ * computation on the vectors.
+ * </p>
+ */
+public final class DistanceKernel {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    /**
+     * @param points the points, indexed in the order of the list.
+     */
+    public DistanceKernel(List<? extends Location> points) {
+        int size = points.size();
+        latitudes = new double[size];
+        longitudes = new double[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for (int i = 0; i < size; i++) {
+            Location point = points.get(i);
+            latitudes[i] = point.latitude;
+            longitudes[i] = point.longitude;
+            double phi = Math.toRadians(point.latitude);
+            double lambda = Math.toRadians(point.longitude);
+            x[i] = Math.cos(phi) * Math.cos(lambda);
+            y[i] = Math.cos(phi) * Math.sin(lambda);
+            z[i] = Math.sin(phi);
+        }
+    }
+
+    /**
+     * @return the number of points.
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * @param i    the index of a point.
+     * @param from the position.
+     * @return the distance in miles between the point and the position.
+     */
+    public double distanceMiles(int i, Location from) {
+        return search(from, GreatCircle.HALF_CIRCUMFERENCE_MILES).distanceMiles(i);
+    }
+
+    /**
+     * Bulk version : distances from one position to all the points.
+     *
+     * @param from  the position.
+     * @param miles receives the distance in miles to each point (at least {@link #size()} elements).
+     */
+    public void distancesFrom(Location from, double[] miles) {
+        double phi = Math.toRadians(from.latitude);
+        double lambda = Math.toRadians(from.longitude);
+        double fromX = Math.cos(phi) * Math.cos(lambda);
+        double fromY = Math.cos(phi) * Math.sin(lambda);
+        double fromZ = Math.sin(phi);
+        int size = x.length;
+        // 1 - cordes au carré : boucle sans branchement ni appel de méthode, vectorisable par le JIT.
+        for (int i = 0; i < size; i++) {
+            double dx = x[i] - fromX;
+            double dy = y[i] - fromY;
+            double dz = z[i] - fromZ;
+            miles[i] = dx * dx + dy * dy + dz * dz;
+        }
+        // 2 - conversion en miles.
+        for (int i = 0; i < size; i++) {
+            miles[i] = GreatCircle.chordSquaredToMiles(miles[i]);
+        }
+    }
+
+    /**
+     * @param from the position.
+     * @return the distance in miles from the position to each point.
+     */
+    public double[] distancesFrom(Location from) {
+        double[] miles = new double[x.length];
+        distancesFrom(from, miles);
+        return miles;
+    }
+
+    /**
+     * Prepares the tests of the points against a circle : vector of the center, bounding box and chord of the radius are
+     * computed once.
+     *
+     * @param from        the center of the circle.
+     * @param radiusMiles the radius of the circle.
+     * @return the search.
+     */
+    public Search search(Location from, double radiusMiles) {
+        return new Search(from.latitude, from.longitude, radiusMiles);
+    }
+
+    /**
+     * Same as {@link #search(Location, double)} for a center given by its coordinates (no Location object needed).
+     *
+     * @param latitude    the latitude of the center of the circle.
+     * @param longitude   the longitude of the center of the circle.
+     * @param radiusMiles the radius of the circle.
+     * @return the search.
+     */
+    public Search search(double latitude, double longitude, double radiusMiles) {
+        return new Search(latitude, longitude, radiusMiles);
+    }
+
+    /**
+     * Points within a circle.
+     */
+    public final class Search {
+
+        private final double fromX;
+        private final double fromY;
+        private final double fromZ;
+        private final double fromLongitude;
+        private final double minLatitude;
+        private final double maxLatitude;
+        // écart de longitude maximum (180 = pas de filtre sur la longitude).
+        private final double longitudeDelta;
+        private final double chordSquaredLimit;
+
+        private Search(double latitude, double longitude, double radiusMiles) {
+            double phi = Math.toRadians(latitude);
+            double lambda = Math.toRadians(longitude);
+            fromX = Math.cos(phi) * Math.cos(lambda);
+            fromY = Math.cos(phi) * Math.sin(lambda);
+            fromZ = Math.sin(phi);
+            fromLongitude = longitude;
+
+            // marge relative : un point exactement sur le cercle n'est pas rejeté à cause d'un arrondi.
+            chordSquaredLimit = GreatCircle.milesToChordSquared(radiusMiles) * (1 + 1e-12);
+            double angle = radiusMiles / GreatCircle.EARTH_RADIUS_MILES;
+            if (angle >= Math.PI) {
+                minLatitude = -90;
+                maxLatitude = 90;
+                longitudeDelta = 180;
+                return;
+            }
+            // sur un grand cercle, l'écart de latitude ne dépasse jamais l'angle parcouru.
+            double latitudeDelta = Math.toDegrees(angle) + 1e-9;
+            minLatitude = latitude - latitudeDelta;
+            maxLatitude = latitude + latitudeDelta;
+            // écart de longitude maximum d'un cercle qui ne contient pas de pôle (et de moins d'un quart de tour).
+            double sinAngle = Math.sin(angle);
+            double cosLatitude = Math.cos(phi);
+            if (minLatitude <= -90 || maxLatitude >= 90 || angle >= Math.PI / 2 || sinAngle >= cosLatitude) {
+                longitudeDelta = 180;
+            } else {
+                longitudeDelta = Math.toDegrees(Math.asin(sinAngle / cosLatitude)) + 1e-9;
+            }
+        }
+
+        /**
+         * @param i the index of a point.
+         * @return true if the point is in the bounding box of the circle (the points outside cannot be in the circle).
+         */
+        public boolean inBoundingBox(int i) {
+            double latitude = latitudes[i];
+            if (latitude < minLatitude || latitude > maxLatitude) {
+                return false;
+            }
+            if (longitudeDelta >= 180) {
+                return true;
+            }
+            double deltaLongitude = Math.abs(longitudes[i] - fromLongitude);
+            // passage de l'antiméridien.
+            if (deltaLongitude > 180) {
+                deltaLongitude = 360 - deltaLongitude;
+            }
+            return deltaLongitude <= longitudeDelta;
+        }
+
+        /**
+         * @param i the index of a point.
+         * @return the squared chord between the point and the center : same order as the distances.
+         */
+        public double chordSquared(int i) {
+            double dx = x[i] - fromX;
+            double dy = y[i] - fromY;
+            double dz = z[i] - fromZ;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        /**
+         * @return the squared chord of the radius : a point is in the circle if its chord is not greater.
+         */
+        public double chordSquaredLimit() {
+            return chordSquaredLimit;
+        }
+
+        /**
+         * @param i the index of a point.
+         * @return true if the point is at a distance less than or equal to the radius.
+         */
+        public boolean contains(int i) {
+            return inBoundingBox(i) && chordSquared(i) <= chordSquaredLimit;
+        }
+
+        /**
+         * @param i the index of a point.
+         * @return the distance in miles between the point and the center.
+         */
+        public double distanceMiles(int i) {
+            return GreatCircle.chordSquaredToMiles(chordSquared(i));
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide.geo;
+
+import gpsUtil.location.Location;
+
+/**
+ * Great-circle distances on a spherical Earth, in statute miles.
+ * <p>
+ * The haversine formula is used instead of the spherical law of cosines : acos of a value rounded slightly above 1 gives
+ * NaN for two identical points, and acos loses most of its precision for short distances. The Earth radius is the one of
+ * the previous formula (one minute of arc = one nautical mile = 1.15077945 statute miles), so the distances are unchanged.
+ * </p>
+ */
+public final class GreatCircle {
+
+    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+    // rayon terrestre équivalent à 60 milles nautiques par degré (3958.76 miles).
+    public static final double EARTH_RADIUS_MILES = 60 * STATUTE_MILES_PER_NAUTICAL_MILE * 180 / Math.PI;
+
+    // demi-circonférence : distance maximum entre deux points.
+    public static final double HALF_CIRCUMFERENCE_MILES = Math.PI * EARTH_RADIUS_MILES;
+
+    private GreatCircle() {
+    }
+
+    /**
+     * @param loc1 first position.
+     * @param loc2 second position.
+     * @return the distance in miles, 0 for two identical positions.
+     */
+    public static double distanceMiles(Location loc1, Location loc2) {
+        return distanceMiles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+    }
+
+    /**
+     * @param latitude1  latitude of the first position, in degrees.
+     * @param longitude1 longitude of the first position, in degrees.
+     * @param latitude2  latitude of the second position, in degrees.
+     * @param longitude2 longitude of the second position, in degrees.
+     * @return the distance in miles, 0 for two identical positions.
+     */
+    public static double distanceMiles(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfDeltaLatitude = Math.sin((phi2 - phi1) / 2);
+        double sinHalfDeltaLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+        // min : l'arrondi peut dépasser 1 pour deux points antipodaux.
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
+    /**
+     * Converts the squared chord between two points of the unit sphere into a distance (haversine = chord² / 4).
+     *
+     * @param chordSquared the squared length of the chord, between 0 and 4.
+     * @return the distance in miles.
+     */
+    static double chordSquaredToMiles(double chordSquared) {
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(chordSquared) / 2));
+    }
+
+    /**
+     * @param miles a distance in miles.
+     * @return the squared chord of the unit sphere for this distance (4 beyond half the circumference).
+     */
+    static double milesToChordSquared(double miles) {
+        if (miles >= HALF_CIRCUMFERENCE_MILES) {
+            return 4;
+        }
+        double chord = 2 * Math.sin(miles / (2 * EARTH_RADIUS_MILES));
+        return chord * chord;
+    }
+
+}
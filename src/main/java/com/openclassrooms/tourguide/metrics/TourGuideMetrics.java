@@ -0,0 +1,188 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Meters of the application, exposed by Actuator (/actuator/metrics and /actuator/prometheus) :
+ * <ul>
+ * <li>tourguide.gateway.calls : duration of each call to gpsUtil, RewardCentral and TripPricer (tags service, operation,
+ * outcome).</li>
+ * <li>tourguide.tracker.cycle : duration of a whole tracker cycle.</li>
+ * <li>tourguide.tracker.lag : delay between the planned start and the real start of a cycle.</li>
+ * <li>tourguide.tracker.overruns : number of cycles longer than their slot (tracker interval / shards).</li>
+ * <li>tourguide.tracker.skipped.users : number of users skipped by the load shedding.</li>
+ * <li>tourguide.tracker.phase : duration of each phase of the tracking of a user (tag phase : location, history,
+ * rewards).</li>
+ * <li>tourguide.tracker.failures : number of users whose tracking failed (tag phase : location, rewards), the other users
+ * of the cycle are still processed.</li>
+ * <li>tourguide.rewards.granted : number of rewards added to the users.</li>
+ * <li>tourguide.trip.deals.deadline : number of trip deals requests answered at the deadline, before all the pricing calls
+ * ended (tag outcome : partial with the offers received, empty if no call had ended).</li>
+ * </ul>
+ * The cache, pool and bulkhead meters are registered by {@code RewardPointsCache}, {@code TourGuideExecutors} and
+ * {@code DependencyGuard}.
+ */
+public class TourGuideMetrics {
+
+    public static final String GATEWAY_CALLS = "tourguide.gateway.calls";
+    public static final String TRACKER_CYCLE = "tourguide.tracker.cycle";
+    public static final String TRACKER_PHASE = "tourguide.tracker.phase";
+    public static final String TRACKER_LAG = "tourguide.tracker.lag";
+    public static final String TRACKER_OVERRUNS = "tourguide.tracker.overruns";
+    public static final String TRACKER_SKIPPED_USERS = "tourguide.tracker.skipped.users";
+    public static final String TRACKER_FAILURES = "tourguide.tracker.failures";
+    public static final String REWARDS_GRANTED = "tourguide.rewards.granted";
+    public static final String TRIP_DEALS_DEADLINE = "tourguide.trip.deals.deadline";
+
+    public static final String PHASE_LOCATION = "location";
+    public static final String PHASE_HISTORY = "history";
+    public static final String PHASE_REWARDS = "rewards";
+
+    private final MeterRegistry registry;
+    private final Timer trackerCycle;
+    private final Timer trackerLag;
+    private final Counter trackerOverruns;
+    private final Counter trackerSkippedUsers;
+    private final Timer locationPhase;
+    private final Timer historyPhase;
+    private final Timer rewardsPhase;
+    private final Counter rewardsGranted;
+    private final Counter locationFailures;
+    private final Counter rewardsFailures;
+    private final Counter tripDealsPartial;
+    private final Counter tripDealsEmpty;
+    // timers des appels externes, créés au premier appel (l'enregistrement dans le registre est coûteux).
+    private final ConcurrentMap<GatewayTimerKey, Timer> gatewayTimers = new ConcurrentHashMap<>();
+
+    public TourGuideMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.trackerCycle = Timer.builder(TRACKER_CYCLE).description("Duration of a tracker cycle over all the users")
+                .register(registry);
+        this.trackerLag = Timer.builder(TRACKER_LAG).description("Delay between the planned and the real start of a tracker cycle")
+                .register(registry);
+        this.trackerOverruns = Counter.builder(TRACKER_OVERRUNS).description("Tracker cycles longer than their slot (interval / shards)")
+                .register(registry);
+        this.trackerSkippedUsers = Counter.builder(TRACKER_SKIPPED_USERS)
+                .description("Users skipped by the load shedding of the tracker").register(registry);
+        this.locationPhase = phaseTimer(PHASE_LOCATION);
+        this.historyPhase = phaseTimer(PHASE_HISTORY);
+        this.rewardsPhase = phaseTimer(PHASE_REWARDS);
+        this.rewardsGranted = Counter.builder(REWARDS_GRANTED).description("Rewards added to the users")
+                .register(registry);
+        this.locationFailures = failureCounter(PHASE_LOCATION);
+        this.rewardsFailures = failureCounter(PHASE_REWARDS);
+        this.tripDealsPartial = tripDealsDeadlineCounter("partial");
+        this.tripDealsEmpty = tripDealsDeadlineCounter("empty");
+    }
+
+    /**
+     * Meters kept in memory only, used when the services are built outside of Spring (unit tests).
+     */
+    public TourGuideMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Times a call to an external service, with outcome=success or outcome=error.
+     *
+     * @param service   the service (gps, reward, pricing).
+     * @param operation the method called.
+     * @param call      the call.
+     * @return the result of the call.
+     */
+    public <T> T recordGatewayCall(String service, String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            gatewayTimers.computeIfAbsent(new GatewayTimerKey(service, operation, outcome), key -> Timer.builder(GATEWAY_CALLS)
+                    .description("Duration of the calls to the external services")
+                    .tags("service", key.service(), "operation", key.operation(), "outcome", key.outcome())
+                    .register(registry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // tags d'un timer d'appel externe.
+    private record GatewayTimerKey(String service, String operation, String outcome) {
+    }
+
+    public Timer trackerCycle() {
+        return trackerCycle;
+    }
+
+    public Timer trackerLag() {
+        return trackerLag;
+    }
+
+    public Counter trackerOverruns() {
+        return trackerOverruns;
+    }
+
+    public Counter trackerSkippedUsers() {
+        return trackerSkippedUsers;
+    }
+
+    public Timer locationPhase() {
+        return locationPhase;
+    }
+
+    public Timer historyPhase() {
+        return historyPhase;
+    }
+
+    public Timer rewardsPhase() {
+        return rewardsPhase;
+    }
+
+    public Counter rewardsGranted() {
+        return rewardsGranted;
+    }
+
+    public Counter locationFailures() {
+        return locationFailures;
+    }
+
+    public Counter rewardsFailures() {
+        return rewardsFailures;
+    }
+
+    public Counter tripDealsPartial() {
+        return tripDealsPartial;
+    }
+
+    public Counter tripDealsEmpty() {
+        return tripDealsEmpty;
+    }
+
+    private Counter tripDealsDeadlineCounter(String outcome) {
+        return Counter.builder(TRIP_DEALS_DEADLINE).description("Trip deals requests answered before all the pricing calls ended")
+                .tag("outcome", outcome).register(registry);
+    }
+
+    private Counter failureCounter(String phase) {
+        return Counter.builder(TRACKER_FAILURES).description("Users whose tracking failed in a phase")
+                .tag("phase", phase).register(registry);
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder(TRACKER_PHASE).description("Duration of a phase of the tracking of a user")
+                .tag("phase", phase).register(registry);
+    }
+
+}
@@ -0,0 +1,435 @@
+package com.openclassrooms.tourguide.model.user;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Append-only history of the locations visited by a user, designed for many appends (Tracker) and concurrent reads (controller).
+ * <p>
+ * Replaces a CopyOnWriteArrayList which copied the whole history on every append :
+ * <ul>
+ * <li>the locations are stored in chunks whose size doubles (8, 16, 32...) : an append never copies the existing locations,
+ * only the small chunk directory is copied when a new chunk is needed (log2(n) references).</li>
+ * <li>writers are serialized, readers never lock : a reader takes a snapshot (chunks + size) which stays valid
+ * whatever the writers do afterwards.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Each location gets a sequence number (0 for the first one ever added). The history can be trimmed by a
+ * {@link LocationRetentionPolicy} : old locations are removed or downsampled, but only before a protected sequence number
+ * (the reward watermark), so the most recent locations always keep consecutive sequence numbers. The maximum number of
+ * entries is enforced by the append that exceeds it (the oldest locations are hidden in O(1)), the other rules and the
+ * release of the memory of the hidden locations when the history is rebuilt (O(1) amortized).
+ * </p>
+ * <p>
+ * The chunks are stored as VisitedLocation objects or as primitive columns (see {@link LocationStorage}), the columnar layout
+ * creating the VisitedLocation objects only when they are read.
+ * </p>
+ */
+public class LocationHistory {
+
+    // taille du premier bloc, chaque bloc suivant est deux fois plus grand.
+    private static final int FIRST_CHUNK_SIZE = 8;
+    private static final int FIRST_CHUNK_SHIFT = Integer.numberOfTrailingZeros(FIRST_CHUNK_SIZE);
+
+    /*
+     * état courant. Remplacé (jamais modifié en place) quand le répertoire des blocs change ou lors d'un clear :
+     * un lecteur qui a pris l'ancien état continue de lire des données cohérentes.
+     */
+    private volatile Store store;
+
+    // identifiant de l'utilisateur, utilisé pour recréer les positions stockées en colonnes (sauf identifiant différent).
+    private final UUID userId;
+
+    // numéro de séquence à partir duquel la politique de rétention est de nouveau évaluée (coût amorti en O(1) par ajout).
+    private long nextRetentionSequence;
+
+    /**
+     * Creates an empty history storing the VisitedLocation objects.
+     */
+    public LocationHistory() {
+        this(null, LocationStorage.OBJECTS);
+    }
+
+    /**
+     * Creates an empty history.
+     *
+     * @param userId  the owner of the locations (required by the columnar storage to recreate them).
+     * @param storage the memory layout.
+     */
+    public LocationHistory(UUID userId, LocationStorage storage) {
+        this.userId = userId;
+        this.store = new Store(storage, 0, 0);
+    }
+
+    /**
+     * @return the current memory layout.
+     */
+    public LocationStorage getStorage() {
+        return store.storage;
+    }
+
+    /**
+     * Changes the memory layout : the existing locations are copied into the new layout (readers keep their snapshot).
+     *
+     * @param storage the new memory layout.
+     */
+    public synchronized void setStorage(LocationStorage storage) {
+        Store current = store;
+        if (current.storage == storage) {
+            return;
+        }
+        int head = current.head;
+        Store converted = new Store(storage, 0, current.dropped + head);
+        for (int i = head; i < current.size; i++) {
+            converted = append(converted, current.get(i, userId), userId);
+        }
+        store = converted;
+    }
+
+    /**
+     * Adds a location at the end of the history in O(1).
+     *
+     * @param visitedLocation the new location visited.
+     */
+    public synchronized void add(VisitedLocation visitedLocation) {
+        store = append(store, visitedLocation, userId);
+    }
+
+    // écrit la position à la fin de current, retourne le nouvel état si un bloc a été ajouté.
+    private static Store append(Store current, VisitedLocation visitedLocation, UUID ownerId) {
+        int index = current.size;
+        int chunk = chunkOf(index);
+        if (chunk == current.chunks.length) {
+            // nouveau bloc : seul le répertoire (quelques références) est copié, pas les positions.
+            Object[] chunks = Arrays.copyOf(current.chunks, chunk + 1);
+            chunks[chunk] = current.storage.newChunk(FIRST_CHUNK_SIZE << chunk);
+            current = new Store(current.storage, chunks, index, current.head, current.dropped);
+        }
+        current.storage.set(current.chunks[chunk], offsetOf(index, chunk), visitedLocation, ownerId);
+        // écriture volatile de size après celle de la position : un lecteur qui voit la nouvelle taille voit aussi la position.
+        current.size = index + 1;
+        return current;
+    }
+
+    /**
+     * Adds a location then applies the retention policy.
+     * <p>
+     * The maximum number of entries is enforced at once. The history is rebuilt (other rules, memory of the hidden locations)
+     * only after a number of appends proportional to its size, so the cost stays O(1) amortized.
+     * </p>
+     *
+     * @param visitedLocation   the new location visited.
+     * @param policy            the retention rules.
+     * @param protectedSequence the locations from this sequence number are never removed (not yet processed by the rewards).
+     * @param nowMillis         the current time.
+     */
+    public synchronized void add(VisitedLocation visitedLocation, LocationRetentionPolicy policy, long protectedSequence,
+            long nowMillis) {
+        add(visitedLocation);
+        if (policy.isUnlimited()) {
+            return;
+        }
+        if (policy.maxEntries() > 0) {
+            enforceMaxEntries(policy.maxEntries(), protectedSequence);
+        }
+        if (getNextSequence() < nextRetentionSequence) {
+            return;
+        }
+        applyRetention(policy, protectedSequence, nowMillis);
+        nextRetentionSequence = getNextSequence() + Math.max(FIRST_CHUNK_SIZE, store.size / 4);
+    }
+
+    // plafond appliqué par l'ajout qui le dépasse : les plus anciennes positions déjà traitées sont masquées en O(1),
+    // leur mémoire est libérée par la prochaine reconstruction de l'historique.
+    private void enforceMaxEntries(int maxEntries, long protectedSequence) {
+        Store current = store;
+        int head = current.head;
+        int excess = current.size - head - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        int removable = (int) Math.min(current.size, Math.max(0, protectedSequence - current.dropped)) - head;
+        int hidden = Math.min(excess, removable);
+        if (hidden > 0) {
+            // écriture volatile : un lecteur qui voit le nouveau début voit aussi la taille écrite avant.
+            current.head = head + hidden;
+        }
+    }
+
+    /**
+     * @return the sequence number the next location added will get (= number of locations ever added).
+     */
+    public long getNextSequence() {
+        Store current = store;
+        return current.dropped + current.size;
+    }
+
+    /**
+     * Returns the locations whose sequence number is greater than or equal to sequence (those still in the history).
+     *
+     * @param sequence the first sequence number wanted.
+     * @return the locations and the sequence number following the last one.
+     */
+    public Slice since(long sequence) {
+        Store current = store;
+        // début lu avant la taille (voir enforceMaxEntries).
+        int head = current.head;
+        int size = current.size;
+        // les positions les plus récentes ont des numéros consécutifs : index = numéro - nombre de positions supprimées.
+        int from = (int) Math.min(size, Math.max(head, sequence - current.dropped));
+        return new Slice(new Snapshot(current, from, size, userId), current.dropped + size);
+    }
+
+    /**
+     * Locations returned by {@link #since(long)}.
+     * <p>
+     * The coordinates can be read by index without creating the VisitedLocation objects of the columnar storage.
+     * </p>
+     */
+    public static final class Slice {
+        private final Snapshot locations;
+        private final long nextSequence;
+
+        private Slice(Snapshot locations, long nextSequence) {
+            this.locations = locations;
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * @return the locations, oldest first.
+         */
+        public List<VisitedLocation> locations() {
+            return locations;
+        }
+
+        /**
+         * @return the sequence number following the last location.
+         */
+        public long nextSequence() {
+            return nextSequence;
+        }
+
+        /**
+         * @return the number of locations.
+         */
+        public int size() {
+            return locations.size;
+        }
+
+        /**
+         * @param index the index of the location, 0 for the oldest.
+         * @return the latitude of the location.
+         */
+        public double latitude(int index) {
+            return locations.latitude(index);
+        }
+
+        /**
+         * @param index the index of the location, 0 for the oldest.
+         * @return the longitude of the location.
+         */
+        public double longitude(int index) {
+            return locations.longitude(index);
+        }
+    }
+
+    // reconstruit l'historique sans les positions supprimées par la politique (uniquement avant protectedSequence).
+    private void applyRetention(LocationRetentionPolicy policy, long protectedSequence, long nowMillis) {
+        Store current = store;
+        int head = current.head;
+        int size = current.size;
+        // index de la première position non supprimable (pas encore traitée).
+        int removable = (int) Math.min(size, Math.max(0, protectedSequence - current.dropped));
+        if (removable == 0) {
+            return;
+        }
+        long maxAgeLimit = policy.maxAge() == null ? Long.MIN_VALUE : nowMillis - policy.maxAge().toMillis();
+        long downsampleLimit = policy.downsampleAfter() == null ? Long.MIN_VALUE
+                : nowMillis - policy.downsampleAfter().toMillis();
+        // au-delà de maxEntries, les plus anciennes sont supprimées en premier.
+        int overflow = policy.maxEntries() == 0 ? 0 : Math.max(0, size - policy.maxEntries());
+
+        List<VisitedLocation> kept = new ArrayList<>(size - head);
+        long lastBucket = Long.MIN_VALUE;
+        // les positions masquées par le plafond (avant head) ne sont pas recopiées.
+        for (int i = head; i < size; i++) {
+            VisitedLocation visitedLocation = current.get(i, userId);
+            if (i < removable) {
+                long time = visitedLocation.timeVisited.getTime();
+                if (i < overflow || time < maxAgeLimit) {
+                    continue;
+                }
+                if (time < downsampleLimit) {
+                    // sous-échantillonnage : une seule position par intervalle de temps.
+                    long bucket = Math.floorDiv(time, policy.downsampleInterval().toMillis());
+                    if (bucket == lastBucket) {
+                        continue;
+                    }
+                    lastBucket = bucket;
+                }
+            }
+            kept.add(visitedLocation);
+        }
+        if (kept.size() == size) {
+            return;
+        }
+
+        // le nouvel état est construit à part puis publié : les lecteurs ne voient jamais un historique partiel.
+        Store compacted = new Store(current.storage, 0, current.dropped + size - kept.size());
+        for (VisitedLocation visitedLocation : kept) {
+            compacted = append(compacted, visitedLocation, userId);
+        }
+        store = compacted;
+    }
+
+    /**
+     * @return the number of locations.
+     */
+    public int size() {
+        Store current = store;
+        int head = current.head;
+        return current.size - head;
+    }
+
+    /**
+     * @return true if the history is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the last location added.
+     *
+     * @return the last location.
+     * @throws IndexOutOfBoundsException if the history is empty.
+     */
+    public VisitedLocation getLast() {
+        Store current = store;
+        int head = current.head;
+        int size = current.size;
+        if (size == head) {
+            throw new IndexOutOfBoundsException("Empty location history");
+        }
+        return current.get(size - 1, userId);
+    }
+
+    /**
+     * Returns a read-only view of the history as it is now : locations added later are not visible in the view,
+     * and it can be iterated while other threads append.
+     *
+     * @return the snapshot.
+     */
+    public List<VisitedLocation> snapshot() {
+        Store current = store;
+        int head = current.head;
+        return new Snapshot(current, head, current.size, userId);
+    }
+
+    /**
+     * Removes all the locations.
+     */
+    public synchronized void clear() {
+        store = new Store(store.storage, 0, 0);
+        nextRetentionSequence = 0;
+    }
+
+    // numéro du bloc contenant l'index : le bloc k contient les index [8 * (2^k - 1), 8 * (2^(k+1) - 1)[.
+    private static int chunkOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_SHIFT) + 1);
+    }
+
+    private static int offsetOf(int index, int chunk) {
+        return index - FIRST_CHUNK_SIZE * ((1 << chunk) - 1);
+    }
+
+    /**
+     * Chunk directory (in the given layout), number of locations written in it, number of the first ones hidden by the
+     * maximum number of entries and number of locations removed before the first one.
+     */
+    private static final class Store {
+        private final LocationStorage storage;
+        private final Object[] chunks;
+        private volatile int size;
+        // positions masquées au début du répertoire (toujours inférieur ou égal à size).
+        private volatile int head;
+        private final long dropped;
+
+        private Store(LocationStorage storage, int size, long dropped) {
+            this(storage, new Object[0], size, 0, dropped);
+        }
+
+        private Store(LocationStorage storage, Object[] chunks, int size, int head, long dropped) {
+            this.storage = storage;
+            this.chunks = chunks;
+            this.size = size;
+            this.head = head;
+            this.dropped = dropped;
+        }
+
+        private VisitedLocation get(int index, UUID userId) {
+            int chunk = chunkOf(index);
+            return storage.get(chunks[chunk], offsetOf(index, chunk), userId);
+        }
+
+        private double latitude(int index) {
+            int chunk = chunkOf(index);
+            return storage.latitude(chunks[chunk], offsetOf(index, chunk));
+        }
+
+        private double longitude(int index) {
+            int chunk = chunkOf(index);
+            return storage.longitude(chunks[chunk], offsetOf(index, chunk));
+        }
+    }
+
+    /**
+     * Read-only view of the locations of a store from index from (included) to end (excluded).
+     */
+    private static final class Snapshot extends AbstractList<VisitedLocation> implements RandomAccess {
+        private final Store store;
+        private final int from;
+        private final int size;
+        private final UUID userId;
+
+        private Snapshot(Store store, int from, int end, UUID userId) {
+            this.store = store;
+            this.from = from;
+            this.size = end - from;
+            this.userId = userId;
+        }
+
+        @Override
+        public VisitedLocation get(int index) {
+            return store.get(from + checkIndex(index), userId);
+        }
+
+        private double latitude(int index) {
+            return store.latitude(from + checkIndex(index));
+        }
+
+        private double longitude(int index) {
+            return store.longitude(from + checkIndex(index));
+        }
+
+        private int checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.model.user;
+
+import java.time.Duration;
+
+/**
+ * Rules limiting the size of the location history of a user, applied when a location is added.
+ * <p>
+ * Only the locations already processed by the reward calculation can be removed or downsampled. A removed location is
+ * gone for good : after a change of the reward rules (RewardsService.forceFullRecalculation or setProximityBuffer), the
+ * full recalculation only rescans the locations still in the history, the ones removed under the previous rules are never
+ * rewarded with the new ones.
+ * </p>
+ *
+ * @param maxEntries         maximum number of locations kept (0 = no limit).
+ * @param maxAge             locations older than this are removed (null = no limit).
+ * @param downsampleAfter    locations older than this are downsampled (null = no downsampling).
+ * @param downsampleInterval once downsampled, only one location is kept per interval.
+ */
+public record LocationRetentionPolicy(int maxEntries, Duration maxAge, Duration downsampleAfter, Duration downsampleInterval) {
+
+    // historique illimité (comportement historique).
+    public static final LocationRetentionPolicy UNLIMITED = new LocationRetentionPolicy(0, null, null, null);
+
+    public LocationRetentionPolicy {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must be positive or 0 : " + maxEntries);
+        }
+        if (downsampleAfter != null && (downsampleInterval == null || downsampleInterval.isZero() || downsampleInterval.isNegative())) {
+            throw new IllegalArgumentException("downsampleInterval must be positive when downsampleAfter is set");
+        }
+    }
+
+    /**
+     * @return true if the policy never removes anything.
+     */
+    public boolean isUnlimited() {
+        return maxEntries == 0 && maxAge == null && downsampleAfter == null;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.openclassrooms.tourguide.model.user;
+
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Memory layout of the chunks of a {@link LocationHistory}.
+ */
+public enum LocationStorage {
+
+    /**
+     * The VisitedLocation objects are kept as they are added (about 80 bytes per location : VisitedLocation, Location, Date).
+     */
+    OBJECTS {
+        @Override
+        Object newChunk(int size) {
+            return new VisitedLocation[size];
+        }
+
+        @Override
+        void set(Object chunk, int offset, VisitedLocation visitedLocation, UUID ownerId) {
+            ((VisitedLocation[]) chunk)[offset] = visitedLocation;
+        }
+
+        @Override
+        VisitedLocation get(Object chunk, int offset, UUID ownerId) {
+            return ((VisitedLocation[]) chunk)[offset];
+        }
+
+        @Override
+        double latitude(Object chunk, int offset) {
+            return ((VisitedLocation[]) chunk)[offset].location.latitude;
+        }
+
+        @Override
+        double longitude(Object chunk, int offset) {
+            return ((VisitedLocation[]) chunk)[offset].location.longitude;
+        }
+    },
+
+    /**
+     * Latitude, longitude and time are stored in primitive arrays (24 bytes per location) : a VisitedLocation is created
+     * each time a location is read, the coordinates can be read without creating it (reward scan). The user id is the
+     * owner's one, except for the locations added with another user id, kept in a column created for the first of them.
+     */
+    COLUMNAR {
+        @Override
+        Object newChunk(int size) {
+            return new Columns(size);
+        }
+
+        @Override
+        void set(Object chunk, int offset, VisitedLocation visitedLocation, UUID ownerId) {
+            Columns columns = (Columns) chunk;
+            columns.latitudes[offset] = visitedLocation.location.latitude;
+            columns.longitudes[offset] = visitedLocation.location.longitude;
+            columns.times[offset] = visitedLocation.timeVisited.getTime();
+            if (!Objects.equals(visitedLocation.userId, ownerId)) {
+                if (columns.userIds == null) {
+                    columns.userIds = new UUID[columns.times.length];
+                }
+                columns.userIds[offset] = visitedLocation.userId;
+            }
+        }
+
+        @Override
+        VisitedLocation get(Object chunk, int offset, UUID ownerId) {
+            Columns columns = (Columns) chunk;
+            UUID userId = columns.userIds == null || columns.userIds[offset] == null ? ownerId : columns.userIds[offset];
+            return new VisitedLocation(userId, new Location(columns.latitudes[offset], columns.longitudes[offset]),
+                    new Date(columns.times[offset]));
+        }
+
+        @Override
+        double latitude(Object chunk, int offset) {
+            return ((Columns) chunk).latitudes[offset];
+        }
+
+        @Override
+        double longitude(Object chunk, int offset) {
+            return ((Columns) chunk).longitudes[offset];
+        }
+    };
+
+    // crée un bloc pouvant contenir size positions.
+    abstract Object newChunk(int size);
+
+    // écrit une position dans un bloc (ownerId : propriétaire de l'historique).
+    abstract void set(Object chunk, int offset, VisitedLocation visitedLocation, UUID ownerId);
+
+    // lit une position d'un bloc.
+    abstract VisitedLocation get(Object chunk, int offset, UUID ownerId);
+
+    // lit les coordonnées d'une position sans créer d'objet.
+    abstract double latitude(Object chunk, int offset);
+
+    abstract double longitude(Object chunk, int offset);
+
+    /**
+     * Chunk of the columnar layout : one primitive array per field.
+     */
+    private static final class Columns {
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final long[] times;
+        // null tant que toutes les positions du bloc ont l'identifiant du propriétaire.
+        private UUID[] userIds;
+
+        private Columns(int size) {
+            latitudes = new double[size];
+            longitudes = new double[size];
+            times = new long[size];
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.model.user;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Nearest attractions of a user (with their reward points), calculated for one position and one version of the attraction
+ * catalogue.
+ * <p>
+ * Immutable : it is replaced as a whole, and stays valid as long as the user does not move and the catalogue is not
+ * reloaded.
+ * </p>
+ *
+ * @param latitude         the latitude of the position used.
+ * @param longitude        the longitude of the position used.
+ * @param catalogueVersion the version of the attraction catalogue used.
+ * @param attractions      the nearest attractions, from the closest to the farthest.
+ */
+public record NearbyAttractionsSnapshot(double latitude, double longitude, long catalogueVersion,
+        List<NearByAttractionDTO> attractions) {
+
+    /**
+     * @param visitedLocation  the position used.
+     * @param catalogueVersion the version of the attraction catalogue used.
+     * @param attractions      the nearest attractions.
+     * @return the snapshot.
+     */
+    public static NearbyAttractionsSnapshot of(VisitedLocation visitedLocation, long catalogueVersion,
+            List<NearByAttractionDTO> attractions) {
+        return new NearbyAttractionsSnapshot(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                catalogueVersion, List.copyOf(attractions));
+    }
+
+    /**
+     * @param visitedLocation  the current position of the user.
+     * @param catalogueVersion the current version of the attraction catalogue.
+     * @return true if the snapshot was calculated for this position and this catalogue.
+     */
+    public boolean isValidFor(VisitedLocation visitedLocation, long catalogueVersion) {
+        return this.catalogueVersion == catalogueVersion && latitude == visitedLocation.location.latitude
+                && longitude == visitedLocation.location.longitude;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.model.user;
+
+/**
+ * Progress of the reward calculation of a user (watermark) : the visited locations whose sequence number is lower than
+ * processedLocations have already been checked against all the attractions, with the reward rules of the given generation.
+ * <p>
+ * It is a sequence number (see {@link LocationHistory}) and not an index, so it stays valid when the retention policy
+ * removes old locations.
+ * </p>
+ * <p>
+ * Immutable so that both values are always read and replaced together.
+ * </p>
+ *
+ * @param generation         the generation of the reward rules (incremented when the proximity buffer changes).
+ * @param processedLocations the number of visited locations already processed (= sequence number of the next one to process).
+ */
+public record RewardsProgress(long generation, long processedLocations) {
+
+    // aucune position traitée.
+    public static final RewardsProgress NONE = new RewardsProgress(-1, 0);
+
+}
@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.model.user;
+
+import java.util.UUID;
+
+/**
+ * Inputs of the trip pricing of a user : the offers only depend on them, so they are the key of the cached offers.
+ *
+ * @param userId       the user (sent to TripPricer as the attraction id).
+ * @param adults       the number of adults.
+ * @param children     the number of children.
+ * @param nightsStay   the duration of the trip.
+ * @param rewardPoints the cumulative reward points of the user.
+ */
+public record TripDealsQuery(UUID userId, int adults, int children, int nightsStay, int rewardPoints) {
+
+    /**
+     * @param user         the user.
+     * @param rewardPoints the cumulative reward points of the user.
+     * @return the pricing inputs for the current preferences of the user.
+     */
+    public static TripDealsQuery of(User user, int rewardPoints) {
+        UserPreferences preferences = user.getUserPreferences();
+        return new TripDealsQuery(user.getUserId(), preferences.getNumberOfAdults(), preferences.getNumberOfChildren(),
+                preferences.getTripDuration(), rewardPoints);
+    }
+
+}
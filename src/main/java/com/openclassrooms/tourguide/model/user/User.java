@@ -3,9 +3,14 @@ package com.openclassrooms.tourguide.model.user;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import lombok.extern.log4j.Log4j2;
 import tripPricer.Provider;
@@ -31,7 +36,15 @@ public class User {
     // liste de toutes les localisations visitées par l’utilisateur (historique GPS).
     // correction ConcurrentModificationException.
 //	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-    private List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
+    // CopyOnWriteArrayList copiait tout l'historique à chaque ajout => structure optimisée pour les ajouts (voir LocationHistory).
+//    private List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
+    private final LocationHistory visitedLocations;
+
+    // règles de rétention de l'historique (illimité par défaut).
+    private volatile LocationRetentionPolicy locationRetentionPolicy = LocationRetentionPolicy.UNLIMITED;
+
+    // nombre de positions de l'historique déjà traitées par le calcul des récompenses (watermark).
+    private final AtomicReference<RewardsProgress> rewardsProgress = new AtomicReference<>(RewardsProgress.NONE);
 
     // liste des récompenses obtenues pour avoir visité des attractions.
     /*
@@ -43,6 +56,18 @@ public class User {
 //    private List<UserReward> userRewards = new ArrayList<>();
     private List<UserReward> userRewards = new CopyOnWriteArrayList<>();
 
+    /*
+     * récompenses par attraction, en plus de la liste : test "déjà récompensé ?" et lecture des points en temps constant, ajout atomique.
+     * La clé est le nom de l'attraction (et non attractionId) car gpsUtil.getAttractions() génère un nouvel UUID à chaque appel.
+     */
+    private final Map<String, UserReward> rewardedAttractions = new ConcurrentHashMap<>();
+
+    // total des points de récompense, mis à jour à chaque ajout : évite de parcourir la liste (offres, résumé des récompenses).
+    private final AtomicInteger totalRewardPoints = new AtomicInteger();
+
+    // attractions les plus proches précalculées par le Tracker (null tant qu'elles n'ont pas été calculées).
+    private volatile NearbyAttractionsSnapshot nearbyAttractions;
+
     // préférences de voyage (nb de personnes, durée du séjour, etc.).
     private UserPreferences userPreferences = new UserPreferences();
     /*
@@ -54,13 +79,19 @@ public class User {
            public final UUID tripId;
         }
     */
-    private List<Provider> tripDeals = new ArrayList<>();
+    // les offres sont conservées avec les critères pour lesquels elles ont été calculées et leur date (voir getTripDealsIfValid).
+    private volatile TripDeals tripDeals = new TripDeals(null, new ArrayList<>(), 0);
+
+    // offres et critères de calcul, remplacés ensemble.
+    private record TripDeals(TripDealsQuery query, List<Provider> providers, long computedAtMillis) {
+    }
 
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        this.visitedLocations = new LocationHistory(userId, LocationStorage.OBJECTS);
     }
 
     public UUID getUserId() {
@@ -96,23 +127,62 @@ public class User {
     }
 
     /**
-     * Adds a location to the user's history.
+     * Adds a location to the user's history, then applies the retention policy.
+     * <p>
+     * The locations not yet processed by the reward calculation are always kept.
+     * </p>
      *
      * @param visitedLocation the new location visited.
      */
     public void addToVisitedLocations(VisitedLocation visitedLocation) {
         log.debug("before visitedLocations.add(visitedLocation)");
-        visitedLocations.add(visitedLocation);
+        visitedLocations.add(visitedLocation, locationRetentionPolicy, rewardsProgress.get().processedLocations(),
+                System.currentTimeMillis());
         log.debug("after visitedLocations.add(visitedLocation)");
     }
 
+    public LocationRetentionPolicy getLocationRetentionPolicy() {
+        return locationRetentionPolicy;
+    }
+
+    public void setLocationRetentionPolicy(LocationRetentionPolicy locationRetentionPolicy) {
+        this.locationRetentionPolicy = locationRetentionPolicy;
+    }
+
+    public LocationStorage getLocationStorage() {
+        return visitedLocations.getStorage();
+    }
+
+    /**
+     * Changes the memory layout of the location history, the existing locations are kept.
+     *
+     * @param locationStorage the new layout.
+     */
+    public void setLocationStorage(LocationStorage locationStorage) {
+        visitedLocations.setStorage(locationStorage);
+    }
+
     /**
      * Returns the list of visited locations.
+     * <p>
+     * The list is a read-only snapshot : it can be iterated while the Tracker adds new locations, which are not visible in it.
+     * </p>
      *
      * @return the list.
      */
     public List<VisitedLocation> getVisitedLocations() {
-        return visitedLocations;
+        return visitedLocations.snapshot();
+    }
+
+    /**
+     * Returns the visited locations whose sequence number is greater than or equal to sequence, i.e. those added after the
+     * first sequence locations (the older ones may have been removed by the retention policy).
+     *
+     * @param sequence the sequence number of the first location wanted.
+     * @return the locations and the sequence number following the last one.
+     */
+    public LocationHistory.Slice getVisitedLocationsSince(long sequence) {
+        return visitedLocations.since(sequence);
     }
 
     /**
@@ -120,30 +190,90 @@ public class User {
      */
     public void clearVisitedLocations() {
         visitedLocations.clear();
+        resetRewardsProgress();
+    }
+
+    /**
+     * Returns the progress of the reward calculation (how many visited locations have already been processed).
+     *
+     * @return the current watermark.
+     */
+    public RewardsProgress getRewardsProgress() {
+        return rewardsProgress.get();
+    }
+
+    /**
+     * Records that the visited locations whose sequence number is lower than processedLocations have been processed with
+     * the rules of the given generation.
+     * The watermark never goes backwards : a slower concurrent calculation cannot undo a more recent one.
+     *
+     * @param generation         the generation of the reward rules used.
+     * @param processedLocations the number of visited locations processed.
+     */
+    public void advanceRewardsProgress(long generation, long processedLocations) {
+        rewardsProgress.accumulateAndGet(new RewardsProgress(generation, processedLocations), (current, candidate) -> {
+            if (candidate.generation() > current.generation()
+                    || (candidate.generation() == current.generation()
+                            && candidate.processedLocations() > current.processedLocations())) {
+                return candidate;
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Forces the next reward calculation to process the whole location history again.
+     */
+    public void resetRewardsProgress() {
+        rewardsProgress.set(RewardsProgress.NONE);
     }
     
     
     /**
      * Add a reward only if it does not already exist for the same attraction.
+     * <p>
+     * The check and the insertion are atomic : two concurrent calls for the same attraction add only one reward.
+     * The points of the reward are added to the running total of the user.
+     * </p>
      *
      * @param userReward the reward to add.
+     * @return true if the reward has been added, false if the attraction was already rewarded.
      */
-    public void addUserReward(UserReward userReward) {
+    public boolean addUserReward(UserReward userReward) {
         /*
          * if(userRewards.stream().filter(r -> !r.attraction.attractionName.equals(userReward.attraction)).count() == 0) {userRewards.add(userReward); } 
          * warning : Unlikely argument type for equals(): Attraction seems to be unrelated to String. 
          * ATTENTION car il y a ici 2 problèmes en fait : 
          * - comparaison entre un nom attractionName et un objet attraction. 
          * - test difficile lire.
+         * La recherche dans la liste est remplacée par un ensemble concurrent (O(1)) : add() ne réussit qu'une seule fois par attraction.
          */
-
-        // Vérifie si une récompense pour cette attraction existe déjà
-        for (UserReward existingReward : userRewards) {
-            if (existingReward.attraction.attractionName.equals(userReward.attraction.attractionName)) {
-                return; // on ne l’ajoute pas car elle existe déjà.
-            }
+        if (rewardedAttractions.putIfAbsent(userReward.attraction.attractionName, userReward) != null) {
+            return false; // on ne l’ajoute pas car elle existe déjà.
         }
-        userRewards.add(userReward); // on l’ajoute car on ne l'a pas trouvée.        
+        userRewards.add(userReward); // on l’ajoute car on ne l'a pas trouvée.
+        totalRewardPoints.addAndGet(userReward.getRewardPoints());
+        return true;
+    }
+
+    /**
+     * Checks in constant time if the user has already been rewarded for an attraction.
+     *
+     * @param attraction the attraction.
+     * @return true if a reward exists for this attraction.
+     */
+    public boolean hasRewardFor(Attraction attraction) {
+        return rewardedAttractions.containsKey(attraction.attractionName);
+    }
+
+    /**
+     * Returns in constant time the reward of the user for an attraction.
+     *
+     * @param attraction the attraction.
+     * @return the reward, or null if the attraction has not been rewarded.
+     */
+    public UserReward getRewardFor(Attraction attraction) {
+        return rewardedAttractions.get(attraction.attractionName);
     }
 
     /**
@@ -155,6 +285,16 @@ public class User {
         return userRewards;
     }
 
+    /**
+     * Returns the sum of the points of the user's rewards, maintained by {@link #addUserReward} (the points of a reward
+     * never change after its creation).
+     *
+     * @return the total, in constant time.
+     */
+    public int getTotalRewardPoints() {
+        return totalRewardPoints.get();
+    }
+
     
     public UserPreferences getUserPreferences() {
         return userPreferences;
@@ -170,15 +310,55 @@ public class User {
      * @return the last one.
      */
     public VisitedLocation getLastVisitedLocation() {
-        return visitedLocations.get(visitedLocations.size() - 1);
+        return visitedLocations.getLast();
+    }
+
+    /**
+     * @return the last nearest attractions calculated for the user (to be checked with
+     *         {@link NearbyAttractionsSnapshot#isValidFor}), or null.
+     */
+    public NearbyAttractionsSnapshot getNearbyAttractions() {
+        return nearbyAttractions;
+    }
+
+    public void setNearbyAttractions(NearbyAttractionsSnapshot nearbyAttractions) {
+        this.nearbyAttractions = nearbyAttractions;
     }
 
     public void setTripDeals(List<Provider> tripDeals) {
-        this.tripDeals = tripDeals;
+        this.tripDeals = new TripDeals(null, tripDeals, 0);
+    }
+
+    /**
+     * Stores offers with the pricing inputs they were calculated for.
+     *
+     * @param tripDeals        the offers.
+     * @param query            the pricing inputs.
+     * @param computedAtMillis the date of the calculation.
+     */
+    public void setTripDeals(List<Provider> tripDeals, TripDealsQuery query, long computedAtMillis) {
+        this.tripDeals = new TripDeals(query, tripDeals, computedAtMillis);
     }
 
     public List<Provider> getTripDeals() {
-        return tripDeals;
+        return tripDeals.providers();
+    }
+
+    /**
+     * Returns the stored offers if they were calculated for the same pricing inputs (same preferences, same reward points)
+     * less than timeToLiveMillis ago.
+     *
+     * @param query            the current pricing inputs.
+     * @param nowMillis        the current date.
+     * @param timeToLiveMillis the validity of the offers.
+     * @return the offers, or null if they must be calculated again.
+     */
+    public List<Provider> getTripDealsIfValid(TripDealsQuery query, long nowMillis, long timeToLiveMillis) {
+        TripDeals current = tripDeals;
+        if (query.equals(current.query()) && nowMillis - current.computedAtMillis() < timeToLiveMillis) {
+            return current.providers();
+        }
+        return null;
     }
 
 }
@@ -30,7 +30,8 @@ public class UserReward {
 
     public final VisitedLocation visitedLocation;
     public final Attraction attraction;
-    private int rewardPoints;
+    // fixé à la création : le total des points de l'utilisateur (User.totalRewardPoints) ne peut pas diverger.
+    private final int rewardPoints;
 
     public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
         this.visitedLocation = visitedLocation;
@@ -38,15 +39,6 @@ public class UserReward {
         this.rewardPoints = rewardPoints;
     }
 
-    public UserReward(VisitedLocation visitedLocation, Attraction attraction) {
-        this.visitedLocation = visitedLocation;
-        this.attraction = attraction;
-    }
-
-    public void setRewardPoints(int rewardPoints) {
-        this.rewardPoints = rewardPoints;
-    }
-
     public int getRewardPoints() {
         return rewardPoints;
     }
@@ -3,9 +3,9 @@ package com.openclassrooms.tourguide.service;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
@@ -15,6 +15,19 @@ import gpsUtil.location.VisitedLocation;
 import lombok.extern.log4j.Log4j2;
 import rewardCentral.RewardCentral;
 
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.GpsUtilGateway;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+import com.openclassrooms.tourguide.geo.AttractionSpatialIndex;
+import com.openclassrooms.tourguide.geo.GreatCircle;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.model.user.LocationHistory;
+import com.openclassrooms.tourguide.model.user.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.user.RewardsProgress;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.model.user.UserReward;
 
@@ -27,136 +40,278 @@ import com.openclassrooms.tourguide.model.user.UserReward;
 @Log4j2
 @Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
 
     // petite distance par défaut en miles pour dire qu’une position est proche d’une attraction.
     private int defaultProximityBuffer = 10;
     private int proximityBuffer = defaultProximityBuffer;
 
+    /*
+     * génération des règles de calcul des récompenses : incrémentée quand proximityBuffer change,
+     * les positions déjà traitées par un utilisateur avec une ancienne génération sont alors toutes recalculées.
+     */
+    private final AtomicLong rewardRulesGeneration = new AtomicLong();
+
     // + grande distance acceptable que la précédente par défaut en miles.
     private int attractionProximityRange = 200;
 
-    // pour trouver la géolocalisation d'un utilisateur + la liste des attractions touristiques associées.
-    private final GpsUtil gpsUtil;
+    // pour trouver la géolocalisation d'un utilisateur + la liste des attractions touristiques associées (gpsUtil ou simulation).
+    private final GpsGateway gpsGateway;
+
+    // pour calculer les récompenses : RewardCentral n'est appelé qu'en cas d'absence dans le cache.
+    private final RewardPointsCache rewardPointsCache;
 
-    // pour calculer les récompenses.
-    private final RewardCentral rewardsCentral;
+    // pools de threads partagés par toute l'application.
+    private final TourGuideExecutors executors;
+
+    // compteurs et chronomètres exposés par Actuator.
+    private final TourGuideMetrics metrics;
+
+    /*
+     * catalogue des attractions chargé une seule fois, sous forme d'index spatial :
+     * gpsUtil.getAttractions() est lent et crée à chaque appel de nouvelles attractions avec un nouvel attractionId (UUID aléatoire),
+     * ce qui rendrait le cache des points de récompense inutile.
+     */
+    private volatile AttractionSpatialIndex attractionIndex;
+    // version du catalogue, incrémentée à chaque rechargement (invalide les attractions proches précalculées).
+    private final AtomicLong catalogueVersion = new AtomicLong();
 
+    @Autowired
+    public RewardsService(GpsGateway gpsGateway, TourGuideExecutors executors, RewardPointsCache rewardPointsCache,
+            TourGuideMetrics metrics) {
+        this.gpsGateway = gpsGateway;
+        this.executors = executors;
+        this.rewardPointsCache = rewardPointsCache;
+        this.metrics = metrics;
+    }
+
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, TourGuideExecutors executors) {
+        this(new GpsUtilGateway(gpsUtil), executors, new RewardPointsCache(new RewardCentralGateway(rewardCentral),
+                executors.reward(), new CacheProperties().getRewardPoints()), new TourGuideMetrics());
+    }
+
+    /**
+     * Constructor used outside of Spring : the service creates its own pools, which the caller must stop with
+     * {@code getExecutors().close()}.
+     *
+     * @param gpsUtil       the geolocation library.
+     * @param rewardCentral the reward points library.
+     */
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.gpsUtil = gpsUtil;
-        this.rewardsCentral = rewardCentral;
+        this(gpsUtil, rewardCentral, new TourGuideExecutors());
+    }
+
+    public TourGuideExecutors getExecutors() {
+        return executors;
+    }
+
+    public TourGuideMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RewardPointsCache getRewardPointsCache() {
+        return rewardPointsCache;
+    }
+
+    /**
+     * Returns the attraction catalogue, loaded from gpsUtil on the first call only.
+     *
+     * @return the list of attractions.
+     */
+    public List<Attraction> getAttractions() {
+        return getAttractionIndex().getAttractions();
+    }
+
+    /**
+     * Returns the spatial index of the attraction catalogue, built on the first call only.
+     *
+     * @return the index.
+     */
+    public AttractionSpatialIndex getAttractionIndex() {
+        AttractionSpatialIndex result = attractionIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = attractionIndex;
+                if (result == null) {
+                    result = new AttractionSpatialIndex(gpsGateway.getAttractions());
+                    attractionIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // charge le catalogue sur le thread appelant (appel bloquant à gpsUtil) : les tâches du pool cpu ne font que parcourir l'index.
+    // en cas d'échec, le chargement est retenté par le calcul de chaque utilisateur, qui échoue seul.
+    void loadAttractionIndex() {
+        try {
+            getAttractionIndex();
+        } catch (RuntimeException e) {
+            log.warn("Attraction catalogue not loaded : " + e);
+        }
+    }
+
+    /**
+     * Loads the attraction catalogue again from gpsUtil and rebuilds the spatial index.
+     * <p>
+     * gpsUtil creates a new attractionId for every attraction on each call : the reward points cached for the previous
+     * catalogue can no longer be read, so the cache is emptied, and the nearby attractions precomputed for the users become
+     * invalid (new catalogue version). Not called by the application, for an operator or a test.
+     * </p>
+     */
+    public void reloadAttractions() {
+        AttractionSpatialIndex index = new AttractionSpatialIndex(gpsGateway.getAttractions());
+        synchronized (this) {
+            attractionIndex = index;
+        }
+        // la version change après l'index : une version lue avant l'index n'est jamais associée à un index plus ancien.
+        catalogueVersion.incrementAndGet();
+        // points de l'ancien catalogue : clés inaccessibles qui occuperaient le cache jusqu'à leur expiration.
+        rewardPointsCache.invalidateAll();
+    }
+
+    /**
+     * @return the version of the attraction catalogue, incremented by each {@link #reloadAttractions()}.
+     */
+    public long getCatalogueVersion() {
+        return catalogueVersion.get();
     }
 
     public void setProximityBuffer(int proximityBuffer) {
         this.proximityBuffer = proximityBuffer;
+        forceFullRecalculation();
     }
 
     public void setDefaultProximityBuffer() {
         proximityBuffer = defaultProximityBuffer;
+        forceFullRecalculation();
+    }
+
+    /**
+     * Forces the next reward calculation of every user to process the whole location history again
+     * (for example when the rules used to award rewards have changed).
+     * <p>
+     * Only the locations still in the history are processed again : those already removed by the retention policy (see
+     * {@link LocationRetentionPolicy}) are not.
+     * </p>
+     */
+    public void forceFullRecalculation() {
+        rewardRulesGeneration.incrementAndGet();
     }
 
     /**
      * Calculates and awards rewards to a user based on places visited and proximity to attractions.
-     * Uses threads to parallelize calls to getRewardPoints().
+     * Blocks until all the rewards of the user have been added.
      *
      * @param user the user for whom to calculate rewards.
-     */    
-    // optimisation uniquement si appel d'un utilisateur car appel à getRewardPoints pénalisant (vu lors du test nearAllAttractions qui était trop lent).
+     */
     public void calculateRewards(User user) {
-        // récupère l'historique des lieux visités par l'utilisateur.
-        List<VisitedLocation> userLocations = user.getVisitedLocations();
-        // récupère la liste des attractions.
-        List<Attraction> attractions = gpsUtil.getAttractions();
- //       log.info("User: " + user.getUserName() + ", locations: " + userLocations.size() + ", attractions: " + attractions.size());
-        // pas besoin de plus de threads pour ce traitement.
-        ExecutorService singleUserExecutor = Executors.newFixedThreadPool(100);        
+        calculateRewardsAsync(user).join();
+    }
+
+    /**
+     * Same as calculateRewards but without blocking : the calls to getRewardPoints() are parallelized on the reward pool.
+     * <p>
+     * The calling thread only does the scan of the places visited (CPU), it never waits for the reward pool.
+     * </p>
+     * <p>
+     * Only the locations added since the last successful calculation are processed (watermark stored in the user),
+     * unless the reward rules have changed since then.
+     * </p>
+     *
+     * @param user the user for whom to calculate rewards.
+     * @return a future completed when all the rewards of the user have been added.
+     */
+    // optimisation car appel à getRewardPoints pénalisant (vu lors du test nearAllAttractions qui était trop lent).
+    public CompletableFuture<Void> calculateRewardsAsync(User user) {
+        long generation = rewardRulesGeneration.get();
+        RewardsProgress progress = user.getRewardsProgress();
+        // on repart de la dernière position traitée (numéro de séquence), ou du début si les règles ont changé depuis.
+        long start = progress.generation() == generation ? progress.processedLocations() : 0;
+        // les positions ajoutées pendant le calcul seront traitées la prochaine fois.
+        LocationHistory.Slice newLocations = user.getVisitedLocationsSince(start);
+        long end = newLocations.nextSequence();
         List<CompletableFuture<Void>> futures = new ArrayList<>();
 
-        // pour chaque lieu que l'utilisateur a visité.
-        for (VisitedLocation visitedLocation : userLocations) {
-            // pour chaque attractions que l'on connait.
-            for (Attraction attraction : attractions) {
-                // On vérifie que l'utilisateur n'a pas encore reçu de récompense pour cette attraction.
-                if (user.getUserRewards().stream()
-                        .filter(r -> r.attraction.attractionName.equals(attraction.attractionName)).count() == 0) {
-                    // On vérifie si la position visitée est proche de l’attraction
-                    if (nearAttraction(visitedLocation, attraction)) {
-                        // création d'une tâche asynchrone pour optimiser l'appel à getRewardPoints.
-                        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                            // On calcule le nombre de points d'une récompense et on l’ajoute à la liste des récompenses de l’utilisateur.
-                            user.addUserReward(
-                                    new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-                        }, singleUserExecutor);
-                        // ajoute le CompletableFuture à la liste pour pouvoir ensuite synchroniser tout à la fin.
-                        futures.add(future);
-                    }
+        // pour chaque nouveau lieu que l'utilisateur a visité (coordonnées lues sans recréer les positions stockées en colonnes).
+        for (int i = 0; i < newLocations.size(); i++) {
+            // pour chaque attraction proche de la position visitée (recherche dans l'index spatial au lieu de toutes les attractions).
+            for (Attraction attraction : nearAttractions(newLocations.latitude(i), newLocations.longitude(i))) {
+                // On vérifie que l'utilisateur n'a pas encore reçu de récompense pour cette attraction (en temps constant).
+                if (!user.hasRewardFor(attraction)) {
+                    // la position n'est créée que pour une récompense.
+                    VisitedLocation visitedLocation = newLocations.locations().get(i);
+                    // On calcule le nombre de points d'une récompense (sans bloquer) et on l’ajoute à la liste des récompenses de l’utilisateur.
+                    CompletableFuture<Void> future = getRewardPointsAsync(attraction, user).thenAccept(rewardPoints -> {
+                        if (user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints))) {
+                            metrics.rewardsGranted().increment();
+                        }
+                    });
+                    // ajoute le CompletableFuture à la liste pour pouvoir ensuite synchroniser tout à la fin.
+                    futures.add(future);
                 }
             }
         }
-        
+
         // crée un nouveau CompletableFuture combiné qui représente l'ensemble des tâches.
-        CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-        // bloque jusqu’à ce que toutes les tâches soient terminées.
-        combinedFuture.join();
-        singleUserExecutor.shutdown();
+        // le watermark n'avance que si toutes les récompenses ont été ajoutées (pas en cas d'erreur).
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenRun(() -> user.advanceRewardsProgress(generation, end));
     }
 
     /**
      * Calculates rewards for a list of users.
-     * Each user is processed in an independent thread for efficient parallelization.
+     * The attraction catalogue is loaded by the calling thread, then the scan of each user runs on the cpu pool and the
+     * reward lookups on the reward pool.
+     * <p>
+     * The number of users in flight is bounded : the caller waits when the limit is reached (backpressure), so the memory
+     * used does not depend on the number of users. A user whose calculation fails is logged and counted, the others are
+     * still processed.
+     * </p>
      *
      * @param users the list of users
      */
     public void calculateRewardsByUsers(List<User> users) {
-
         /*
-         *  Interface qui gère un pool de threads.
-         *  Jusqu'à ... tâches peuvent s'exécuter en parallèle.
-         *  Les threads sont réutilisés : on ne recrée pas un thread pour chaque tâche.
-         *  
+         * sources : https://www.infoq.com/fr/articles/Java-Thread-Pool-Performance-Tuning/
+         * Les pools sont créés une seule fois (TourGuideExecutors) : plus de création de threads à chaque appel.
+         * Aucune tâche n'attend un autre pool : le scan de l'utilisateur renvoie un future qui est chaîné (thenCompose).
+         * Plus de liste de futures : le nombre d'utilisateurs en cours est borné par un InFlightLimiter.
          */
-
-//        sources : https://www.infoq.com/fr/articles/Java-Thread-Pool-Performance-Tuning/
-        
-//        ExecutorService executor = Executors.newFixedThreadPool(32); // 162 s pour 10.000 =>  toujous hs pour 100.000 => 27mn
-//        ExecutorService executor = Executors.newFixedThreadPool(100); // 51 s pour 10.000 ==> OK
-        ExecutorService manyUsersExecutor = Executors.newFixedThreadPool(1000); // 10 s pour 10.000 ==> 100.000 = 100 s => - de 2 mn !!!
-//        ExecutorService executor = Executors.newFixedThreadPool(10000); // + ne change rien
-
-        // test en java 21 : Virtual Thread => pas besoin de régler la taille du pool en faisant des essais (et moins consommateur de ressources).
-        // ExecutorService manyUsersExecutor = Executors.newVirtualThreadPerTaskExecutor();
-
-        
-        // liste pour suivre les tâches.
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-        for (User user : users) {
-            // création d'une tâche asynchrone pour un utilisateur
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                calculateRewards(user);
-            }, manyUsersExecutor);
-            // ajoute le CompletableFuture à la liste pour pouvoir ensuite synchroniser tout à la fin.
-            futures.add(future);
+        InFlightLimiter inFlight = new InFlightLimiter(executors.getMaxInFlightRewards());
+        loadAttractionIndex();
+        try {
+            for (User user : users) {
+                // attend qu'une place se libère.
+                inFlight.acquire();
+                // création d'une tâche asynchrone pour un utilisateur
+                CompletableFuture.supplyAsync(() -> calculateRewardsAsync(user), executors.cpu())
+                        .thenCompose(future -> future)
+                        .whenComplete((result, error) -> {
+                            if (error != null) {
+                                metrics.rewardsFailures().increment();
+                                log.warn("Reward calculation of user " + user.getUserName() + " failed : "
+                                        + (error.getCause() != null ? error.getCause() : error));
+                            }
+                            inFlight.release();
+                        });
+            }
+            // bloque jusqu’à ce que toutes les tâches soient terminées.
+            inFlight.awaitIdle();
+        } catch (InterruptedException e) {
+            log.debug("Reward calculation interrupted");
+            Thread.currentThread().interrupt();
         }
-
-        // crée un nouveau CompletableFuture combiné qui représente l'ensemble des tâches.
-        CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-        // bloque jusqu’à ce que toutes les tâches soient terminées.
-        combinedFuture.join();
-        // test en java 21 : Le VirtualThreadExecutor n’a pas besoin d’être fermé.
-        manyUsersExecutor.shutdown();
-     }
-    
+    }
 
     /**
-     * Check if the visited place and attraction are nearby (small radius in miles).
+     * Returns the attractions near the visited place (small radius in miles).
      *
-     * @param visitedLocation the location visited
-     * @param attraction      the tourist attraction
-     * @return true if the distance is less than the proximity buffer
+     * @param latitude  the latitude of the location visited
+     * @param longitude the longitude of the location visited
+     * @return the attractions whose distance is less than the proximity buffer
      */    
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
+    private List<Attraction> nearAttractions(double latitude, double longitude) {
+        return getAttractionIndex().withinRadius(latitude, longitude, proximityBuffer);
     }
 
     
@@ -171,6 +326,27 @@ public class RewardsService {
         return getDistance(attraction, location) > attractionProximityRange ? false : true;
     }
 
+    /**
+     * Returns all the attractions close to the location (same radius as isWithinAttractionProximity).
+     *
+     * @param location the reference position
+     * @return the attractions in the radius of interest
+     */
+    public List<Attraction> getAttractionsWithinProximity(Location location) {
+        return getAttractionIndex().withinRadius(location, attractionProximityRange);
+    }
+
+    /**
+     * Returns the attractions closest to the location, sorted by distance.
+     *
+     * @param location the reference position
+     * @param count    the maximum number of attractions
+     * @return at most count attractions, the nearest first
+     */
+    public List<Attraction> getNearestAttractions(Location location, int count) {
+        return getAttractionIndex().nearest(location, count);
+    }
+
     /**
      * Calculates the number of points in an attraction reward associated with a user.
      *
@@ -180,29 +356,31 @@ public class RewardsService {
      */
     // Calcule le nombre de points d'une récompense d'une attraction associée à un utilisateur.
     public int getRewardPoints(Attraction attraction, User user) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+        return rewardPointsCache.get(attraction.attractionId, user.getUserId());
+    }
+
+    /**
+     * Same as getRewardPoints without blocking : RewardCentral is called on the reward pool only if the points are not cached.
+     *
+     * @param attraction the tourist attraction
+     * @param user the user for whom to get rewards points
+     * @return a future completed with the number of points awarded
+     */
+    public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, User user) {
+        return rewardPointsCache.getAsync(attraction.attractionId, user.getUserId());
     }
     
     
     /**
-     * Calculates the distance in miles between two positions.
+     * Calculates the distance in miles between two positions (haversine, see {@link GreatCircle} : 0 and not NaN for two
+     * identical positions).
      *
      * @param loc1 first position
      * @param loc2 second position
      * @return distance in miles
      */
     public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math
-                .acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
-        return statuteMiles;
+        return GreatCircle.distanceMiles(loc1, loc2);
     }
 
 }
@@ -1,6 +1,19 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.concurrent.InFlightLimiter;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.config.HistoryProperties;
+import com.openclassrooms.tourguide.config.TrackerProperties;
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.dto.RewardsSummaryDTO;
+import com.openclassrooms.tourguide.geo.AttractionSpatialIndex;
+import com.openclassrooms.tourguide.model.user.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.user.LocationStorage;
+import com.openclassrooms.tourguide.model.user.NearbyAttractionsSnapshot;
+import com.openclassrooms.tourguide.model.user.TripDealsQuery;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.model.user.UserReward;
 import com.openclassrooms.tourguide.tracker.Tracker;
@@ -9,36 +22,46 @@ import com.openclassrooms.tourguide.util.InternalTestHelper;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j2;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
 
-import org.apache.commons.lang3.time.StopWatch;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.GpsUtilGateway;
+import com.openclassrooms.tourguide.gateway.PricingGateway;
+import com.openclassrooms.tourguide.gateway.TripPricerGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 
 /**
  * The main service of the TourGuide application, responsible for managing users, their geolocation, calculating rewards and recommending attractions or travel offers.
  *
- * <p>It centralizes access to functionality by orchestrating calls to simulated external libraries: GpsUtil, TripPricer, and RewardCentral via the RewardsService service.</p>
+ * <p>It centralizes access to functionality by orchestrating calls to simulated external libraries: GpsUtil, TripPricer, and RewardCentral via the RewardsService service.
+ * The libraries are reached through gateways (see {@link GpsGateway}, {@link PricingGateway}) which can be replaced by local simulations.</p>
  *
  * <p>It also initializes the Tracker, which periodically updates the position and rewards of all registered users.</p>
  *
@@ -51,13 +74,26 @@ public class TourGuideService {
     public static final int MAX_NEARBY_ATTRACTIONS = 5;
 
     // pour trouver la géolocalisation d'un utilisateur + la liste des attractions touristiques associées.
-    private final GpsUtil gpsUtil;
+    private final GpsGateway gpsGateway;
 
     // service qui calcule les récompenses.
     private final RewardsService rewardsService;
 
-    // pour générer des offres de voyage.
-    private final TripPricer tripPricer = new TripPricer();
+    // pools de threads partagés par toute l'application.
+    private final TourGuideExecutors executors;
+
+    // pour générer des offres de voyage (appels TripPricer ou simulation en parallèle, offres en cache).
+    private final TripDealsAggregator tripDealsAggregator;
+
+    // chronomètres des phases du suivi des utilisateurs (partagés avec RewardsService).
+    private final TourGuideMetrics metrics;
+
+    // stockage et rétention de l'historique des positions appliqués aux utilisateurs ajoutés.
+    private final LocationStorage locationStorage;
+    private final LocationRetentionPolicy locationRetentionPolicy;
+
+    // calcul par le Tracker des attractions les plus proches de chaque utilisateur localisé.
+    private final boolean precomputeNearbyAttractions;
 
     // thread qui toutes les 5 minutes (scheduler), pour tous les utilisateurs enregistrés, met à jour de leur position GPS et effectue le recalcul de leurs récompenses.
     public final Tracker tracker;
@@ -65,9 +101,17 @@ public class TourGuideService {
     // pour créer des utilisateurs pour les tests.
     boolean testMode = true;
 
-    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
+    @Autowired
+    public TourGuideService(GpsGateway gpsGateway, RewardsService rewardsService, TourGuideExecutors executors,
+            HistoryProperties historyProperties, TripDealsAggregator tripDealsAggregator, TrackerProperties trackerProperties) {
+        this.gpsGateway = gpsGateway;
+        this.tripDealsAggregator = tripDealsAggregator;
         this.rewardsService = rewardsService;
+        this.executors = executors;
+        this.metrics = rewardsService.getMetrics();
+        this.locationStorage = historyProperties.getStorage();
+        this.locationRetentionPolicy = historyProperties.toPolicy();
+        this.precomputeNearbyAttractions = trackerProperties.isPrecomputeNearbyAttractions();
 
         // pour tester l'endpoint getRewards sinon vide.
         //rewardsService.setProximityBuffer(Integer.MAX_VALUE);
@@ -84,12 +128,33 @@ public class TourGuideService {
         }
 
         // initialise et lance le scheduler
-        tracker = new Tracker(this);
+        tracker = new Tracker(this, trackerProperties);
 
         // ajoute un hook pour permettre au scheduler de s'arrêter correctement.
         addShutDownHook();
     }
 
+    /**
+     * Constructor used outside of Spring (tests) : the pools are shared with the RewardsService and the location history
+     * has the default settings (objects, unlimited), the libraries are called directly, the offers are requested and cached
+     * with the default settings, the tracker runs every 5 minutes.
+     *
+     * @param gpsUtil        the geolocation library.
+     * @param rewardsService the service that calculates rewards.
+     */
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+        this(new GpsUtilGateway(gpsUtil, rewardsService.getExecutors().gps(),
+                rewardsService.getExecutors().getMaxInFlightLocations()), rewardsService, rewardsService.getExecutors(),
+                new HistoryProperties(), new TripDealsAggregator(new TripPricerGateway(new TripPricer()),
+                        rewardsService.getExecutors().pricing(), new TripDealsCache(new CacheProperties().getTripDeals()),
+                        new GatewayProperties().getPricingFanOut(), rewardsService.getMetrics()),
+                new TrackerProperties());
+    }
+
+    public TourGuideMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns the list of rewards earned by a user.
      *
@@ -100,6 +165,16 @@ public class TourGuideService {
         return user.getUserRewards();
     }
 
+    /**
+     * Returns the number of rewards and the total reward points of a user.
+     *
+     * @param user the user concerned.
+     * @return the summary, read from the running totals of the user.
+     */
+    public RewardsSummaryDTO getRewardsSummary(User user) {
+        return new RewardsSummaryDTO(user.getUserName(), user.getUserRewards().size(), user.getTotalRewardPoints());
+    }
+
     /**
      * If the user already has positions, we return the last one, otherwise we request one.
      *
@@ -136,150 +211,349 @@ public class TourGuideService {
      *
      * @param user the user to add.
      */
-    
     public void addUser(User user) {
-        if (!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
-        }
+        applyHistorySettings(user);
+        internalUserMap.putIfAbsent(user.getUserName(), user);
+    }
+
+    /**
+     * Removes a user. The tracker stops tracking the user at the next cycle of its shard.
+     *
+     * @param userName the name of the user to remove.
+     * @return the removed User object or null if not found.
+     */
+    public User removeUser(String userName) {
+        return internalUserMap.remove(userName);
     }
     
+    // applique le stockage et la rétention de l'historique configurés.
+    private void applyHistorySettings(User user) {
+        user.setLocationStorage(locationStorage);
+        user.setLocationRetentionPolicy(locationRetentionPolicy);
+    }
+
     /**
      * Returns the offers available for a user.
+     * <p>
+     * The offers only depend on the preferences and the cumulative reward points of the user : the offers stored in the
+     * user are returned as long as these inputs are unchanged and the time to live of the cache is not expired, otherwise
+     * they are read from the cache or requested from TripPricer (see {@link TripDealsAggregator} : the offers received
+     * before the response deadline). A change of preferences or new rewards give new offers.
+     * </p>
      *
      * @param user the user for whom we are looking offers.
      * @return list of suppliers.
      */
     public List<Provider> getTripDeals(User user) {
-        // calcule le total de points de récompense.
-        int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-        // récupère les offres.
-        log.debug("getTripDeals/tripPricer.getPrice,user.getUserId()=" + user.getUserId()
-                + ",user.getUserPreferences().getNumberOfAdults()=" + user.getUserPreferences().getNumberOfAdults()
-                + ",user.getUserPreferences().getNumberOfChildren()=" + user.getUserPreferences().getNumberOfChildren()
-                + ",user.getUserPreferences().getTripDuration()=" + user.getUserPreferences().getTripDuration()
-                + ",cumulatativeRewardPoints=" + cumulatativeRewardPoints);
-        List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-                user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-                user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
+        // total de points de récompense, tenu à jour par l'utilisateur.
+        int cumulatativeRewardPoints = user.getTotalRewardPoints();
+        TripDealsQuery query = TripDealsQuery.of(user, cumulatativeRewardPoints);
+        // offres déjà stockées dans l'objet User pour les mêmes critères et encore valides.
+        long now = System.currentTimeMillis();
+        List<Provider> providers = user.getTripDealsIfValid(query, now, tripDealsAggregator.getTimeToLive().toMillis());
+        if (providers != null) {
+            return providers;
+        }
+        // récupère les offres (cache, sinon TripPricer) : aucune si TripPricer n'a pas répondu avant l'échéance.
+        TripDealsAggregator.TripDeals tripDeals = tripDealsAggregator.getTripDeals(tripPricerApiKey, query);
+        providers = tripDeals.providers();
         log.debug("getTripDeals/providers=" + providers);
-        // stocke ces offres dans l’objet User.
-        user.setTripDeals(providers);
+        // stocke ces offres dans l’objet User, sans critères si elles sont partielles : la demande suivante relira le cache.
+        if (tripDeals.complete()) {
+            user.setTripDeals(providers, query, now);
+        } else if (!providers.isEmpty()) {
+            user.setTripDeals(providers);
+        }
         return providers;
     }
 
     /**
      * Updates the user's current GPS position, saves this position in the history, triggers the calculation of its rewards, and returns the user's new GPS position.
+     * <p>
+     * If the geolocation service fails (after its retries) and the user has already been located, the last known position is
+     * returned and the history is not changed. If the calculation of the rewards fails, it is deferred : the new positions
+     * stay unprocessed and will be processed by the next calculation.
+     * </p>
      *
      * @param user the user concerned.
-     * @return the new position visited.
+     * @return the new position visited, or the last known position if the geolocation service is unavailable.
      */
     public VisitedLocation trackUserLocation(User user) {
-        StopWatch stopWatch = new StopWatch();
-        
         log.debug("......................DEBUT trackUserLocation ......................" + user.getUserName());
 
-        stopWatch.start();
+        // la durée de chaque phase est mesurée par un Timer (tourguide.tracker.phase) au lieu d'un StopWatch + log.
         // appelle gpsUtil pour obtenir la position courante
-        VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-        stopWatch.stop();
-        log.debug("getUserLocation : " + stopWatch.getTime() + " ms");
-        
-        stopWatch.reset();
-        stopWatch.start();
+        VisitedLocation visitedLocation;
+        try {
+            visitedLocation = metrics.locationPhase().record(() -> gpsGateway.getUserLocation(user.getUserId()));
+        } catch (GatewayException e) {
+            if (user.getVisitedLocations().isEmpty()) {
+                throw e;
+            }
+            // repli : dernière position connue.
+            trackingFailed(user, TourGuideMetrics.PHASE_LOCATION, e);
+            return user.getLastVisitedLocation();
+        }
+
         // ajoute cette position dans l’historique de l’utilisateur.
-        user.addToVisitedLocations(visitedLocation);
-        stopWatch.stop();
-        log.debug("addToVisitedLocations : " + stopWatch.getTime() + " ms");
-        
-        stopWatch.reset();
-        stopWatch.start();
-        // calcule les récompenses.
-        rewardsService.calculateRewards(user);
-        stopWatch.stop();
-        log.debug("calculateRewards : " + stopWatch.getTime() + " ms");
-        
+        metrics.historyPhase().record(() -> user.addToVisitedLocations(visitedLocation));
+
+        // calcule les récompenses (reporté au prochain calcul en cas d'échec : le watermark n'avance pas).
+        try {
+            metrics.rewardsPhase().record(() -> rewardsService.calculateRewards(user));
+        } catch (CompletionException | GatewayException e) {
+            trackingFailed(user, TourGuideMetrics.PHASE_REWARDS, e);
+        }
+
         log.debug("......................FIN trackUserLocation ......................" + user.getUserName());
         return visitedLocation;
     }
-    
-    
+
+    /**
+     * Same as trackUserLocation method for several users, with one batch call to the geolocation service.
+     * <p>
+     * The locations are fetched by {@link GpsGateway#getUserLocations} (one bulk request, or bounded parallel calls to
+     * gpsUtil), added to the histories, then the rewards of the located users are calculated. A user that could not be
+     * located is missing from the result.
+     * </p>
+     *
+     * @param users the users concerned.
+     * @return the new position of each located user, by userName, in the order of the users.
+     */
+    public Map<String, VisitedLocation> trackUserLocations(List<User> users) {
+        Map<UUID, VisitedLocation> locations = gpsGateway
+                .getUserLocations(users.stream().map(User::getUserId).collect(Collectors.toList()));
+
+        Map<String, VisitedLocation> result = new LinkedHashMap<>();
+        List<User> located = new ArrayList<>(locations.size());
+        for (User user : users) {
+            VisitedLocation visitedLocation = locations.get(user.getUserId());
+            if (visitedLocation == null) {
+                metrics.locationFailures().increment();
+                log.warn("Tracking of user " + user.getUserName() + " failed in phase " + TourGuideMetrics.PHASE_LOCATION);
+                continue;
+            }
+            // ajoute cette position dans l’historique de l’utilisateur.
+            metrics.historyPhase().record(() -> user.addToVisitedLocations(visitedLocation));
+            result.put(user.getUserName(), visitedLocation);
+            located.add(user);
+        }
+
+        // calcule les récompenses des utilisateurs localisés.
+        rewardsService.calculateRewardsByUsers(located);
+        return result;
+    }
+
     /**
      * Same as trackUserLocation method, for all users passed as parameters, using optimized parallel processing.
+     * <p>
+     * The users go through a streaming pipeline with two stages : fetch of the location and update of the history on the gps
+     * pool, then calculation of the rewards, whose scan of the attraction index runs on the cpu pool. Each stage has a bounded number of users in flight : the caller takes the place
+     * of the user in both stages before submitting it, and waits when one of them is full (backpressure), so the gps threads
+     * never wait for the rewards stage. Nothing is kept per user, so the memory used does not depend on the number of users.
+     * </p>
+     * <p>
+     * If tourguide.tracker.precompute-nearby-attractions is enabled, the nearby attractions of each user are then calculated
+     * in a third bounded stage that never waits : when it is full, the user is skipped and /getNearbyAttractions calculates
+     * them on demand.
+     * </p>
+     * <p>
+     * A user whose tracking fails is logged and counted (tourguide.tracker.failures), the other users are still processed.
+     * </p>
      *
      * @param users the list of users to be processed.
      */
     public void trackUserLocationByUsers(List<User> users) {
-        ExecutorService executor = Executors.newFixedThreadPool(1000);
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        InFlightLimiter locations = new InFlightLimiter(executors.getMaxInFlightLocations());
+        InFlightLimiter rewards = new InFlightLimiter(executors.getMaxInFlightRewards());
+        InFlightLimiter nearby = new InFlightLimiter(executors.getMaxInFlightRewards());
+        rewardsService.loadAttractionIndex();
+        try {
+            for (User user : users) {
+                // attend qu'une place se libère dans l'étape de localisation, puis dans celle des récompenses :
+                // les deux places sont prises ici, les tâches du pool gps ne bloquent jamais.
+                locations.acquire();
+                try {
+                    rewards.acquire();
+                } catch (InterruptedException e) {
+                    locations.release();
+                    throw e;
+                }
+                CompletableFuture.supplyAsync(() -> {
+                    // appelle gpsUtil pour obtenir la position courante et l'ajoute dans l'historique.
+                    VisitedLocation visitedLocation = metrics.locationPhase()
+                            .record(() -> gpsGateway.getUserLocation(user.getUserId()));
+                    metrics.historyPhase().record(() -> user.addToVisitedLocations(visitedLocation));
+                    return visitedLocation;
+                }, executors.gps()).whenComplete((visitedLocation, error) -> {
+                    locations.release();
+                    if (error != null) {
+                        trackingFailed(user, TourGuideMetrics.PHASE_LOCATION, error);
+                        rewards.release();
+                    } else {
+                        calculateRewardsInPipeline(user, rewards, nearby);
+                    }
+                });
+            }
+            locations.awaitIdle();
+            rewards.awaitIdle();
+            nearby.awaitIdle();
+        } catch (InterruptedException e) {
+            // arrêt du tracker : les utilisateurs restants ne sont pas traités.
+            log.debug("Tracking interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        for (User user : users) {
-            futures.add(CompletableFuture.runAsync(() -> {
-                trackUserLocation(user);
-            }, executor));
+    // la place dans l'étape des récompenses a déjà été prise par le producteur, elle est libérée à la fin du calcul.
+    private void calculateRewardsInPipeline(User user, InFlightLimiter rewards, InFlightLimiter nearby) {
+        // le calcul des récompenses est asynchrone : le chronomètre s'arrête quand toutes les récompenses sont ajoutées.
+        Timer.Sample sample = Timer.start();
+        // le parcours de l'index (CPU) quitte le thread gps, une exception devient l'échec du future.
+        CompletableFuture.supplyAsync(() -> rewardsService.calculateRewardsAsync(user), executors.cpu())
+                .thenCompose(future -> future)
+                .whenComplete((result, error) -> {
+                    sample.stop(metrics.rewardsPhase());
+                    if (error != null) {
+                        trackingFailed(user, TourGuideMetrics.PHASE_REWARDS, error);
+                    }
+                    // place prise dans l'étape des attractions proches avant de libérer celle-ci : rien n'échappe à awaitIdle.
+                    refreshNearbyAttractions(user, nearby);
+                    rewards.release();
+                });
+    }
+
+    // recalcule les attractions proches si l'utilisateur a bougé ou si le catalogue a changé (sinon rien à faire).
+    // étape séparée des récompenses, sans attente : quand elle est pleine, l'utilisateur est ignoré.
+    // un échec ou un utilisateur ignoré n'est pas un échec du suivi : /getNearbyAttractions les recalculera à la demande.
+    private void refreshNearbyAttractions(User user, InFlightLimiter nearby) {
+        if (!precomputeNearbyAttractions || user.getVisitedLocations().isEmpty()) {
+            return;
         }
+        VisitedLocation visitedLocation = user.getLastVisitedLocation();
+        NearbyAttractionsSnapshot snapshot = user.getNearbyAttractions();
+        if ((snapshot != null && snapshot.isValidFor(visitedLocation, rewardsService.getCatalogueVersion()))
+                || !nearby.tryAcquire()) {
+            return;
+        }
+        try {
+            getNearByAttractionsAsync(visitedLocation, user).whenComplete((attractions, error) -> {
+                if (error != null) {
+                    log.debug("Nearby attractions of user " + user.getUserName() + " not precomputed : " + error);
+                }
+                nearby.release();
+            });
+        } catch (RuntimeException e) {
+            log.debug("Nearby attractions of user " + user.getUserName() + " not precomputed : " + e);
+            nearby.release();
+        }
+    }
 
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();  
-        executor.shutdown();
+    // l'échec d'un utilisateur n'interrompt pas le cycle : il est tracé et compté.
+    // l'utilisateur garde sa dernière position, les récompenses de ses nouvelles positions sont calculées au prochain cycle.
+    private void trackingFailed(User user, String phase, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        (TourGuideMetrics.PHASE_LOCATION.equals(phase) ? metrics.locationFailures() : metrics.rewardsFailures()).increment();
+        log.warn("Tracking of user " + user.getUserName() + " failed in phase " + phase + " : " + cause
+                + (TourGuideMetrics.PHASE_REWARDS.equals(phase) ? " (deferred to the next calculation)" : ""));
     }
-    
+
     /**
      * Returns the list of attractions closest to the user, sorted by distance, with associated distances and reward points.
+     * <p>
+     * The attractions precomputed by the Tracker for this position are returned as is. Otherwise they are calculated (see
+     * {@link #getNearByAttractionsAsync}) and kept for the next calls.
+     * </p>
      *
      * @param visitedLocation the user's current position.
      * @param user            the user concerned.
      * @return NearByAttractionDTO list limited to MAX_NEARBY_ATTRACTIONS.
-     */    
-    // optimisation CompletableFuture car appel à getRewarPoints pénalisant (vu lors du test getNearbyAttractions qui était trop lent)
+     */
     public List<NearByAttractionDTO> getNearByAttractions(VisitedLocation visitedLocation, User user) {
-        // Liste de tâches asynchrones
-        List<CompletableFuture<NearByAttractionDTO>> futures = new ArrayList<>();
-        // pas besoin de plus de threads pour ce traitement.
-        ExecutorService executor = Executors.newFixedThreadPool(100);
-        
-        // construction de la liste de NearByAttractionDTO (1 ère partie).
-        for (Attraction attraction : gpsUtil.getAttractions()) {
-            // Lancement d’une tâche asynchrone pour chaque attraction ==> c'est getRewardPoints qui prend du temps. 
-            CompletableFuture<NearByAttractionDTO> future = CompletableFuture.supplyAsync(() -> {
-                return new NearByAttractionDTO(
-                        attraction.attractionName,
-                        attraction.latitude,
-                        attraction.longitude,
-                        visitedLocation.location.latitude,
-                        visitedLocation.location.longitude,
-                        // idem RewardsService.nearAttraction
-                        rewardsService.getDistance(attraction, visitedLocation.location),
-                        rewardsService.getRewardPoints(attraction, user)
-                );
-            }, executor);
-            futures.add(future);
+        NearbyAttractionsSnapshot snapshot = user.getNearbyAttractions();
+        if (snapshot != null && snapshot.isValidFor(visitedLocation, rewardsService.getCatalogueVersion())) {
+            return snapshot.attractions();
         }
+        return getNearByAttractionsAsync(visitedLocation, user).join();
+    }
 
-        // Attente des résultats ==> construction de la liste de NearByAttractionDTO (2 ème partie).
-        List<NearByAttractionDTO> dtos = new ArrayList<>();
-        for (CompletableFuture<NearByAttractionDTO> future : futures) {
-            dtos.add(future.join());
+    /**
+     * Calculates the list of attractions closest to the user, without blocking.
+     * <p>
+     * The attractions are first ranked by distance (spatial index + bounded heap) on the cpu pool, then the reward points are fetched in parallel
+     * for the MAX_NEARBY_ATTRACTIONS winners only. If the points of an attraction cannot be obtained, the points of the reward
+     * the user already has for it are used, otherwise 0. When all the points have been obtained, the result is stored in the
+     * user as a snapshot, valid until the user moves or the attraction catalogue is reloaded.
+     * </p>
+     *
+     * @param visitedLocation the user's current position.
+     * @param user            the user concerned.
+     * @return a future completed with the NearByAttractionDTO list limited to MAX_NEARBY_ATTRACTIONS.
+     */
+    // optimisation car appel à getRewarPoints pénalisant (vu lors du test getNearbyAttractions qui était trop lent) : 5 appels au lieu d'un par attraction.
+    public CompletableFuture<List<NearByAttractionDTO>> getNearByAttractionsAsync(VisitedLocation visitedLocation, User user) {
+        // version lue avant l'index : un rechargement du catalogue pendant le calcul rend le résultat invalide, jamais l'inverse.
+        long catalogueVersion = rewardsService.getCatalogueVersion();
+        // catalogue chargé sur le thread appelant (appel bloquant à gpsUtil), le pool cpu ne fait que le classement.
+        AttractionSpatialIndex index = rewardsService.getAttractionIndex();
+        // 1 - classement par distance : uniquement les MAX_NEARBY_ATTRACTIONS plus proches, déjà triées de la plus proche à la plus lointaine.
+        return CompletableFuture
+                .supplyAsync(() -> index.nearest(visitedLocation.location, MAX_NEARBY_ATTRACTIONS), executors.cpu())
+                .thenCompose(nearestAttractions -> nearByAttractions(nearestAttractions, visitedLocation, user,
+                        catalogueVersion));
+    }
+
+    private CompletableFuture<List<NearByAttractionDTO>> nearByAttractions(List<Attraction> nearestAttractions,
+            VisitedLocation visitedLocation, User user, long catalogueVersion) {
+        // 2 - lancement en parallèle des appels à getRewardPoints pour les gagnantes seulement (sauf si déjà en cache).
+        AtomicBoolean degraded = new AtomicBoolean();
+        List<CompletableFuture<NearByAttractionDTO>> futures = new ArrayList<>();
+        for (Attraction attraction : nearestAttractions) {
+            futures.add(rewardsService.getRewardPointsAsync(attraction, user)
+                    // repli si RewardCentral est indisponible : points déjà obtenus pour cette attraction, sinon 0.
+                    .exceptionally(error -> {
+                        degraded.set(true);
+                        return knownRewardPoints(attraction, user, error);
+                    })
+                    .thenApply(rewardPoints -> new NearByAttractionDTO(
+                            attraction.attractionName,
+                            attraction.latitude,
+                            attraction.longitude,
+                            visitedLocation.location.latitude,
+                            visitedLocation.location.longitude,
+                            // idem RewardsService.nearAttraction
+                            rewardsService.getDistance(attraction, visitedLocation.location),
+                            rewardPoints)));
         }
-        
-        executor.shutdown();
-        
-        /*
-         * Trier la liste des dtos, de la plus petite distance à la plus grande, en comparant les distances vers l’attraction. 
-         * sources :
-         * https://medium.com/@AlexanderObregon/javas-comparator-comparing-method-explained-342361288af6
-         * https://docs.oracle.com/javase/10/docs/api/java/util/Comparator.html#comparingDouble(java.util.function.ToDoubleFunction)
-         */
-        dtos.sort(Comparator.comparingDouble(NearByAttractionDTO::getDistanceToAttraction));
-
-        /*
-         * Filtrage : on ne garde que les MAX_NEARBY_ATTRACTIONS premières attractions.
-         * source :
-         * https://codegym.cc/fr/groups/posts/fr.416.methode-sublist-en-java-arraylist-et-list
-         */
-        // Attention car la taille de la liste peut être inférieure à MAX_NEARBY_ATTRACTIONS => IndexOutOfBoundExecption.
-        int maxIndex = Math.min(MAX_NEARBY_ATTRACTIONS, dtos.size());
-        return dtos.subList(0, maxIndex);
+
+        // 3 - résultats dans l'ordre des distances, conservés dans l'utilisateur s'ils ne contiennent pas de points de repli.
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<NearByAttractionDTO> dtos = new ArrayList<>(futures.size());
+            for (CompletableFuture<NearByAttractionDTO> future : futures) {
+                dtos.add(future.join());
+            }
+            if (!degraded.get()) {
+                user.setNearbyAttractions(NearbyAttractionsSnapshot.of(visitedLocation, catalogueVersion, dtos));
+            }
+            return dtos;
+        });
     }
     
+    private int knownRewardPoints(Attraction attraction, User user, Throwable error) {
+        log.warn("Reward points of " + attraction.attractionName + " unavailable for user " + user.getUserName() + " : "
+                + (error.getCause() != null ? error.getCause() : error));
+        UserReward userReward = user.getRewardFor(attraction);
+        return userReward == null ? 0 : userReward.getRewardPoints();
+    }
+
+    /**
+     * Stops the tracker when the Spring context is closed, before the shared pools are shut down.
+     */
+    @PreDestroy
+    public void stopTracker() {
+        tracker.stopTracking();
+    }
+
     /**
      * Registers a shutdown hook with the JVM to ensure proper shutdown of the scheduler when the application closes.
      */
@@ -299,7 +573,8 @@ public class TourGuideService {
     private static final String tripPricerApiKey = "test-server-api-key";
     // Database connection will be used for external users, but for testing purposes
     // internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new HashMap<>();
+    // lu par le tracker pendant les ajouts et suppressions des requêtes REST.
+    private final Map<String, User> internalUserMap = new ConcurrentHashMap<>();
 
     // création d'utilisateurs pour les tests.
     private void initializeInternalUsers() {
@@ -308,6 +583,7 @@ public class TourGuideService {
             String phone = "000";
             String email = userName + "@tourGuide.com";
             User user = new User(UUID.randomUUID(), userName, phone, email);
+            applyHistorySettings(user);
             // génère des positions pour un utilisateur.
             generateUserLocationHistory(user);
 
@@ -0,0 +1,212 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.gateway.CallPriority;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.PricingGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.model.user.TripDealsQuery;
+
+import lombok.extern.log4j.Log4j2;
+import tripPricer.Provider;
+
+/**
+ * Aggregates the trip deals of several TripPricer calls sent in parallel, within a response deadline.
+ * <p>
+ * TripPricer only offers one blocking call, which returns 5 providers picked among its catalogue : the calls (shards) are
+ * sent in parallel on the pricing pool and their offers are merged, keeping the cheapest offer of each provider and the
+ * maxDeals cheapest providers. At the deadline, the offers of the calls already ended are returned (no offer if none ended) :
+ * the calls still running are not cancelled, the complete merge is put in the {@link TripDealsCache} when they end and is
+ * returned by the next request.
+ * </p>
+ * <p>
+ * The shards are identical calls : N shards multiply the load on TripPricer by N, and keeping the cheapest offer of each
+ * provider biases the prices down (the minimum of N random prices). One shard (the default) only adds the deadline and the
+ * cache to the TripPricer call.
+ * </p>
+ * <p>
+ * Concurrent requests with the same pricing inputs share the same calls. The calls keep the priority (interactive or
+ * background) of the requesting thread.
+ * </p>
+ */
+@Log4j2
+public class TripDealsAggregator {
+
+    private final PricingGateway pricingGateway;
+    private final Executor executor;
+    private final TripDealsCache cache;
+    private final int shards;
+    private final Duration deadline;
+    private final int maxDeals;
+    private final TourGuideMetrics metrics;
+
+    // appels en cours, par critères de calcul.
+    private final ConcurrentMap<TripDealsQuery, Aggregation> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param pricingGateway the pricing service.
+     * @param executor       the pool on which TripPricer is called.
+     * @param cache          the offers already calculated, completed by the calls ended after the deadline.
+     * @param fanOut         the number of parallel calls, the deadline and the maximum number of offers.
+     * @param metrics        the counters of the requests answered at the deadline.
+     */
+    public TripDealsAggregator(PricingGateway pricingGateway, Executor executor, TripDealsCache cache,
+            GatewayProperties.PricingFanOut fanOut, TourGuideMetrics metrics) {
+        if (fanOut.getShards() < 1 || fanOut.getMaxDeals() < 1) {
+            throw new IllegalArgumentException("tourguide.gateway.pricing-fan-out.shards and max-deals must be at least 1 : "
+                    + fanOut.getShards() + ", " + fanOut.getMaxDeals());
+        }
+        this.pricingGateway = pricingGateway;
+        this.executor = executor;
+        this.cache = cache;
+        this.shards = fanOut.getShards();
+        this.deadline = fanOut.getDeadline();
+        this.maxDeals = fanOut.getMaxDeals();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Offers of a request.
+     *
+     * @param providers the offers, sorted by price.
+     * @param complete  true if all the calls had ended (or the offers came from the cache), false for the offers received
+     *                  at the deadline (empty if no call had ended).
+     */
+    public record TripDeals(List<Provider> providers, boolean complete) {
+    }
+
+    /**
+     * @return the time to live of the offers.
+     */
+    public Duration getTimeToLive() {
+        return cache.getTimeToLive();
+    }
+
+    /**
+     * Returns the offers for the pricing inputs : from the cache, or from the TripPricer calls ended before the deadline.
+     *
+     * @param apiKey the key of the pricing service.
+     * @param query  the pricing inputs.
+     * @return the offers, none if no call ended before the deadline (offers calculated for other inputs are never returned).
+     * @throws GatewayException if all the calls failed before the deadline.
+     */
+    public TripDeals getTripDeals(String apiKey, TripDealsQuery query) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        List<Provider> cached = cache.getIfPresent(query);
+        if (cached != null) {
+            return new TripDeals(cached, true);
+        }
+        Aggregation aggregation = inFlight.computeIfAbsent(query, q -> new Aggregation());
+        if (aggregation.started.compareAndSet(false, true)) {
+            start(apiKey, query, aggregation);
+        }
+        try {
+            return new TripDeals(aggregation.complete.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS),
+                    true);
+        } catch (TimeoutException e) {
+            List<Provider> arrived = aggregation.arrived();
+            if (arrived.isEmpty()) {
+                metrics.tripDealsEmpty().increment();
+                log.warn("No trip deals received within " + deadline.toMillis() + " ms for " + query);
+                return new TripDeals(List.of(), false);
+            }
+            metrics.tripDealsPartial().increment();
+            log.debug("Partial trip deals returned at the deadline for " + query);
+            return new TripDeals(arrived, false);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GatewayException gatewayException) {
+                throw gatewayException;
+            }
+            throw new GatewayException("Trip deals unavailable for " + query, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException("Interrupted while waiting for trip deals", e);
+        }
+    }
+
+    // lance les appels en parallèle : le résultat complet est mis en cache à la fin du dernier appel.
+    private void start(String apiKey, TripDealsQuery query, Aggregation aggregation) {
+        CallPriority priority = CallPriority.current();
+        List<CompletableFuture<List<Provider>>> calls = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            calls.add(new CompletableFuture<>());
+        }
+        // les appels sont visibles (arrived) avant d'être envoyés : un appel terminé avant l'échéance n'est jamais ignoré.
+        aggregation.calls = calls;
+        for (CompletableFuture<List<Provider>> call : calls) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        call.complete(CallPriority.callWith(priority, () -> pricingGateway.getPrice(apiKey, query.userId(),
+                                query.adults(), query.children(), query.nightsStay(), query.rewardPoints())));
+                    } catch (RuntimeException e) {
+                        call.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                call.completeExceptionally(e);
+            }
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            List<Provider> deals = aggregation.arrived();
+            if (deals.isEmpty() && error != null) {
+                // tous les appels ont échoué : rien n'est mis en cache, la demande suivante relance les appels.
+                inFlight.remove(query, aggregation);
+                aggregation.complete.completeExceptionally(
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            cache.put(query, deals);
+            inFlight.remove(query, aggregation);
+            aggregation.complete.complete(deals);
+        });
+    }
+
+    // fusion des offres : l'offre la moins chère de chaque fournisseur, puis les maxDeals fournisseurs les moins chers.
+    private List<Provider> merge(List<CompletableFuture<List<Provider>>> calls) {
+        Map<String, Provider> cheapest = new HashMap<>();
+        for (CompletableFuture<List<Provider>> call : calls) {
+            if (!call.isDone() || call.isCompletedExceptionally()) {
+                continue;
+            }
+            for (Provider provider : call.join()) {
+                cheapest.merge(provider.name, provider,
+                        (current, candidate) -> candidate.price < current.price ? candidate : current);
+            }
+        }
+        List<Provider> deals = new ArrayList<>(cheapest.values());
+        deals.sort(Comparator.comparingDouble(provider -> provider.price));
+        return deals.size() > maxDeals ? new ArrayList<>(deals.subList(0, maxDeals)) : deals;
+    }
+
+    // appels en cours pour des critères de calcul.
+    private class Aggregation {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<List<Provider>> complete = new CompletableFuture<>();
+        private volatile List<CompletableFuture<List<Provider>>> calls = List.of();
+
+        // offres des appels déjà terminés.
+        private List<Provider> arrived() {
+            return merge(calls);
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Progress of one shard of the Tracker (immutable, replaced each time the shard is tracked).
+ *
+ * @param shard            the index of the shard (0 to shards - 1).
+ * @param passes           the number of times the shard has been tracked.
+ * @param lastEnd          the end of the last pass (null before the first one).
+ * @param lastDuration     the duration of the last pass.
+ * @param lastTrackedUsers the number of users tracked by the last pass.
+ * @param lastSkippedUsers the number of users skipped by the load shedding in the last pass.
+ */
+public record ShardProgress(int shard, long passes, Instant lastEnd, Duration lastDuration, int lastTrackedUsers,
+        int lastSkippedUsers) {
+
+    /**
+     * @param shard the index of the shard.
+     * @return the progress of a shard not tracked yet.
+     */
+    public static ShardProgress none(int shard) {
+        return new ShardProgress(shard, 0, null, Duration.ZERO, 0, 0);
+    }
+
+}
@@ -1,12 +1,18 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import org.apache.commons.lang3.time.StopWatch;
-
+import com.openclassrooms.tourguide.config.TrackerProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.service.TourGuideService;
 
@@ -14,24 +20,69 @@ import lombok.extern.log4j.Log4j2;
 
 /**
  * Thread that every 5 minutes (scheduler), for all registered users, updates their GPS position and recalculates their rewards.
+ * <p>
+ * The users are split into shards by the hash of their userId, and the interval into as many time slots : each cycle tracks
+ * one shard, so a fraction of the users is tracked every interval / shards instead of all of them at once (no burst of calls
+ * to GpsUtil and RewardCentral followed by a long idle time). The users are read again at each cycle : users added or removed
+ * are taken into account at the next cycle of their shard. With a single shard (default), each cycle tracks all the users.
+ * </p>
+ * <p>
+ * The cycles start at a fixed rate (every slot from the first start) : the cadence does not drift with the duration of
+ * the cycles. A cycle longer than its slot is an overrun : the next cycle starts immediately (the missed slots are not
+ * caught up), the overrun is counted and reported by {@link TrackerHealthIndicator}, as well as a cycle still running long
+ * after its slot (a cycle that never ends would otherwise never be counted). With load shedding enabled, the cycle
+ * following an overrun skips the share of the users that did not fit in the slot, chosen among the users located less than
+ * minUserInterval ago, the most recently located first : the users located the longest ago are always tracked.
+ * </p>
  */
 @Log4j2
 public class Tracker extends Thread {
-    private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
 
     // création du thread
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private final TourGuideService tourGuideService;
-    private boolean stop = false;
+    private final TrackerProperties properties;
+    private final int shards;
+    // durée d'une tranche horaire : intervalle / nombre de shards.
+    private final long slotNanos;
+    private volatile boolean stop = false;
+
+    // état après le dernier cycle (lu par l'indicateur de santé).
+    private volatile TrackerStatus status = TrackerStatus.NONE;
+    // début du cycle en cours (System.nanoTime), 0 entre deux cycles (lu par l'indicateur de santé).
+    private volatile long cycleStartNanos;
+    // avancement de chaque shard (lu par l'indicateur de santé).
+    private final AtomicReferenceArray<ShardProgress> shardProgress;
 
     /**
-     * Constructs a Tracker bound to a TourGuideService instance.
+     * Constructs a Tracker bound to a TourGuideService instance, with the default cadence (5 minutes, no load shedding).
      * The thread is immediately started upon creation.
      *
      * @param tourGuideService the service used for tracking operations.
      */
     public Tracker(TourGuideService tourGuideService) {
+        this(tourGuideService, new TrackerProperties());
+    }
+
+    /**
+     * Constructs a Tracker bound to a TourGuideService instance.
+     * The thread is immediately started upon creation.
+     *
+     * @param tourGuideService the service used for tracking operations.
+     * @param properties       the cadence, the sharding and the load shedding settings.
+     */
+    public Tracker(TourGuideService tourGuideService, TrackerProperties properties) {
         this.tourGuideService = tourGuideService;
+        this.properties = properties;
+        if (properties.getShards() < 1) {
+            throw new IllegalArgumentException("tourguide.tracker.shards must be at least 1 : " + properties.getShards());
+        }
+        this.shards = properties.getShards();
+        this.slotNanos = properties.getInterval().toNanos() / shards;
+        this.shardProgress = new AtomicReferenceArray<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            shardProgress.set(shard, ShardProgress.none(shard));
+        }
 
         // lance le thread.
         executorService.submit(this);
@@ -46,6 +97,62 @@ public class Tracker extends Thread {
         executorService.shutdownNow();
     }
 
+    /**
+     * @return the state of the tracker after its last cycle.
+     */
+    public TrackerStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the time elapsed since the start of the cycle in progress, or null between two cycles.
+     */
+    public Duration getCurrentCycleDuration() {
+        long start = cycleStartNanos;
+        return start == 0 ? null : Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * @return the time slot of a cycle : the interval divided by the number of shards.
+     */
+    public Duration getSlot() {
+        return Duration.ofNanos(slotNanos);
+    }
+
+    /**
+     * @return the planned interval between the start of two cycles.
+     */
+    public Duration getInterval() {
+        return properties.getInterval();
+    }
+
+    /**
+     * @return the number of shards, each one tracked once per interval.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the progress of each shard, by shard index.
+     */
+    public List<ShardProgress> getShardProgress() {
+        List<ShardProgress> progress = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            progress.add(shardProgress.get(shard));
+        }
+        return progress;
+    }
+
+    /**
+     * @param userId the id of a user.
+     * @param shards the number of shards.
+     * @return the shard of the user : stable as long as the number of shards does not change.
+     */
+    public static int shardOf(UUID userId, int shards) {
+        return Math.floorMod(userId.hashCode(), shards);
+    }
+
     /**
      * Loops through user tracking operations: retrieving the user list, updating their GPS location, and recalculating associated rewards.
      * <p>
@@ -54,36 +161,132 @@ public class Tracker extends Thread {
      */
     @Override
     public void run() {
-        // chronomètre.
-        StopWatch stopWatch = new StopWatch();
+        TourGuideMetrics metrics = tourGuideService.getMetrics();
+        // date prévue du prochain cycle (cadence fixe).
+        long plannedStart = System.nanoTime();
+        int shard = 0;
         while (true) {
             if (Thread.currentThread().isInterrupted() || stop) {
                 log.debug("Tracker stopping");
                 break;
             }
 
-            List<User> users = tourGuideService.getAllUsers();
-            log.info("Begin Tracker. Tracking " + users.size() + " users.");
+            long start = System.nanoTime();
+            cycleStartNanos = start;
+            long lag = Math.max(0, start - plannedStart);
+            metrics.trackerLag().record(lag, TimeUnit.NANOSECONDS);
+
+            List<User> shardUsers = usersOfShard(tourGuideService.getAllUsers(), shard);
+            List<User> users = selectUsers(shardUsers);
+            int skipped = shardUsers.size() - users.size();
+            if (skipped > 0) {
+                metrics.trackerSkippedUsers().increment(skipped);
+            }
+            log.info("Begin Tracker. Tracking " + users.size() + " users" + (shards > 1 ? " of shard " + shard : "")
+                    + (skipped > 0 ? " (" + skipped + " skipped)." : "."));
             log.debug("......................DEBUT SCHEDULER......................");
-            stopWatch.start();
             /*
              * pour chaque utilisateur : met à jour la position GPS courante de l’utilisateur, l’ajoute à son historique, déclenche le calcul de ses récompenses, 
              * 
              */
             // appel de la méthode optimisée.
             tourGuideService.trackUserLocationByUsers(users);
-            
-            stopWatch.stop();
-            log.info("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-            stopWatch.reset();
+            if (Thread.currentThread().isInterrupted() || stop) {
+                // cycle interrompu par l'arrêt : il n'est pas comptabilisé.
+                cycleStartNanos = 0;
+                log.debug("Tracker stopping");
+                break;
+            }
+
+            long duration = System.nanoTime() - start;
+            cycleStartNanos = 0;
+            // durée du cycle publiée dans tourguide.tracker.cycle (/actuator/metrics).
+            metrics.trackerCycle().record(duration, TimeUnit.NANOSECONDS);
+            boolean overrun = duration > slotNanos;
+            if (overrun) {
+                metrics.trackerOverruns().increment();
+                log.warn("Tracker cycle overrun : " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms for a slot of "
+                        + TimeUnit.NANOSECONDS.toMillis(slotNanos) + " ms.");
+            }
+            updateStatus(duration, lag, users.size(), skipped, overrun);
+            updateShardProgress(shard, duration, users.size(), skipped);
+            shard = (shard + 1) % shards;
+            log.info("Tracker Time Elapsed: " + TimeUnit.NANOSECONDS.toSeconds(duration) + " seconds.");
             log.debug("......................FIN SCHEDULER......................");
+
+            // cadence fixe : le prochain cycle est prévu une tranche horaire après le début prévu de celui-ci.
+            // en cas de dépassement, il démarre tout de suite, sans rattraper les cycles manqués.
+            plannedStart = Math.max(plannedStart + slotNanos, overrun ? System.nanoTime() : Long.MIN_VALUE);
             try {
                 log.debug("Tracker sleeping");
-                TimeUnit.SECONDS.sleep(trackingPollingInterval);
+                TimeUnit.NANOSECONDS.sleep(plannedStart - System.nanoTime());
             } catch (InterruptedException e) {
                 break;
             }
         }
 
     }
+
+    private List<User> usersOfShard(List<User> users, int shard) {
+        if (shards == 1) {
+            return users;
+        }
+        List<User> selected = new ArrayList<>(users.size() / shards + 1);
+        for (User user : users) {
+            if (shardOf(user.getUserId(), shards) == shard) {
+                selected.add(user);
+            }
+        }
+        return selected;
+    }
+
+    // délestage : après un dépassement, on ignore la part des utilisateurs qui n'a pas tenu dans la tranche horaire
+    // (cycle de 3 tranches => 2/3), choisis parmi ceux localisés il y a moins de minUserInterval, les plus récents d'abord.
+    private List<User> selectUsers(List<User> users) {
+        TrackerStatus previous = status;
+        if (!properties.isLoadShedding() || !previous.isOverrunning()) {
+            return users;
+        }
+        int maxSkipped = (int) (users.size() * (1 - (double) slotNanos / previous.lastCycleDuration().toNanos()));
+        if (maxSkipped <= 0) {
+            return users;
+        }
+        long limit = System.currentTimeMillis() - properties.getMinUserInterval().toMillis();
+        List<User> selected = new ArrayList<>(users.size());
+        List<RecentUser> recent = new ArrayList<>();
+        for (User user : users) {
+            long lastLocated = user.getVisitedLocations().isEmpty() ? Long.MIN_VALUE
+                    : user.getLastVisitedLocation().timeVisited.getTime();
+            if (lastLocated < limit) {
+                selected.add(user);
+            } else {
+                recent.add(new RecentUser(user, lastLocated));
+            }
+        }
+        if (recent.size() > maxSkipped) {
+            // les moins récemment localisés des utilisateurs récents sont gardés.
+            recent.sort(Comparator.comparingLong(RecentUser::lastLocated));
+            for (RecentUser user : recent.subList(0, recent.size() - maxSkipped)) {
+                selected.add(user.user());
+            }
+        }
+        return selected;
+    }
+
+    // date de la dernière localisation lue une seule fois : le tri ne dépend pas des localisations ajoutées pendant le tri.
+    private record RecentUser(User user, long lastLocated) {
+    }
+
+    private void updateStatus(long durationNanos, long lagNanos, int trackedUsers, int skippedUsers, boolean overrun) {
+        TrackerStatus previous = status;
+        status = new TrackerStatus(previous.cycles() + 1, Instant.now(), Duration.ofNanos(durationNanos),
+                Duration.ofNanos(lagNanos), trackedUsers, skippedUsers, overrun ? previous.consecutiveOverruns() + 1 : 0,
+                overrun ? previous.totalOverruns() + 1 : previous.totalOverruns());
+    }
+
+    private void updateShardProgress(int shard, long durationNanos, int trackedUsers, int skippedUsers) {
+        ShardProgress previous = shardProgress.get(shard);
+        shardProgress.set(shard, new ShardProgress(shard, previous.passes() + 1, Instant.now(), Duration.ofNanos(durationNanos),
+                trackedUsers, skippedUsers));
+    }
 }
@@ -0,0 +1,51 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Health of the Tracker (/actuator/health) : DOWN when several consecutive cycles took longer than their slot, or when the
+ * cycle in progress has already lasted as many slots (a blocked cycle never ends, so it would never be counted as an
+ * overrun), i.e. the locations of the users are no longer refreshed at the expected rate. The details include the progress
+ * of each shard.
+ */
+public class TrackerHealthIndicator implements HealthIndicator {
+
+    private final Tracker tracker;
+    private final int overrunsBeforeDown;
+
+    /**
+     * @param tracker            the tracker to watch.
+     * @param overrunsBeforeDown the number of consecutive overruns that makes the tracker DOWN.
+     */
+    public TrackerHealthIndicator(Tracker tracker, int overrunsBeforeDown) {
+        this.tracker = tracker;
+        this.overrunsBeforeDown = overrunsBeforeDown;
+    }
+
+    @Override
+    public Health health() {
+        TrackerStatus status = tracker.getStatus();
+        Duration currentCycleDuration = tracker.getCurrentCycleDuration();
+        boolean stuck = currentCycleDuration != null
+                && currentCycleDuration.compareTo(tracker.getSlot().multipliedBy(overrunsBeforeDown)) > 0;
+        Health.Builder builder = status.consecutiveOverruns() >= overrunsBeforeDown || stuck ? Health.down() : Health.up();
+        return builder
+                .withDetail("interval", tracker.getInterval().toString())
+                .withDetail("currentCycleDuration", String.valueOf(currentCycleDuration))
+                .withDetail("cycles", status.cycles())
+                .withDetail("lastCycleEnd", String.valueOf(status.lastCycleEnd()))
+                .withDetail("lastCycleDuration", status.lastCycleDuration().toString())
+                .withDetail("lastLag", status.lastLag().toString())
+                .withDetail("lastTrackedUsers", status.lastTrackedUsers())
+                .withDetail("lastSkippedUsers", status.lastSkippedUsers())
+                .withDetail("consecutiveOverruns", status.consecutiveOverruns())
+                .withDetail("totalOverruns", status.totalOverruns())
+                .withDetail("shards", tracker.getShards())
+                .withDetail("shardProgress", tracker.getShardProgress())
+                .build();
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * State of the Tracker after its last cycle (immutable, replaced at the end of each cycle). With several shards, a cycle
+ * tracks one shard during one slot of the interval.
+ *
+ * @param cycles              the number of cycles done.
+ * @param lastCycleEnd        the end of the last cycle (null before the first one).
+ * @param lastCycleDuration   the duration of the last cycle.
+ * @param lastLag             the delay between the planned start and the real start of the last cycle.
+ * @param lastTrackedUsers    the number of users tracked by the last cycle.
+ * @param lastSkippedUsers    the number of users skipped by the load shedding in the last cycle.
+ * @param consecutiveOverruns the number of consecutive cycles longer than their slot.
+ * @param totalOverruns       the number of cycles longer than their slot since the start.
+ */
+public record TrackerStatus(long cycles, Instant lastCycleEnd, Duration lastCycleDuration, Duration lastLag,
+        int lastTrackedUsers, int lastSkippedUsers, int consecutiveOverruns, long totalOverruns) {
+
+    // aucun cycle effectué.
+    public static final TrackerStatus NONE = new TrackerStatus(0, null, Duration.ZERO, Duration.ZERO, 0, 0, 0, 0);
+
+    /**
+     * @return true if the last cycle was longer than its slot.
+     */
+    public boolean isOverrunning() {
+        return consecutiveOverruns > 0;
+    }
+
+}
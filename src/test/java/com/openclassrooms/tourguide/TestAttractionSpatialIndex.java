@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.geo.AttractionSpatialIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+// mémo : AttractionSpatialIndex ==> index spatial des attractions, doit donner le même résultat qu'un parcours de toutes les attractions.
+public class TestAttractionSpatialIndex {
+
+    // pools du service, arrêtés à la fin du test.
+    private final TourGuideExecutors executors = new TourGuideExecutors();
+    private final RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral(), executors);
+    private final List<Attraction> attractions = rewardsService.getAttractions();
+    private final AttractionSpatialIndex index = new AttractionSpatialIndex(attractions);
+
+    @AfterEach
+    public void closeExecutors() {
+        executors.close();
+    }
+
+    @Test
+    // compare la recherche par rayon avec le parcours de toutes les attractions, pour des positions et des rayons aléatoires.
+    public void withinRadiusMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // given
+            Location location = randomLocation(random);
+            double radius = random.nextInt(4000);
+
+            // when
+            List<Attraction> found = index.withinRadius(location, radius);
+
+            // then
+            List<Attraction> expected = attractions.stream()
+                    .filter(a -> !(rewardsService.getDistance(a, location) > radius)).collect(Collectors.toList());
+            assertEquals(new HashSet<>(expected), new HashSet<>(found));
+        }
+    }
+
+    @Test
+    // compare les k plus proches avec le tri de toutes les attractions.
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            // given
+            Location location = randomLocation(random);
+
+            // when
+            List<Attraction> found = index.nearest(location, 5);
+
+            // then
+            List<Attraction> expected = attractions.stream()
+                    .sorted(Comparator.comparingDouble(a -> rewardsService.getDistance(a, location))).limit(5)
+                    .collect(Collectors.toList());
+            assertEquals(expected, found);
+        }
+    }
+
+    private Location randomLocation(Random random) {
+        return new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.gateway.CallPriority;
+import com.openclassrooms.tourguide.gateway.DependencyGuard;
+import com.openclassrooms.tourguide.gateway.GatewayRejectedException;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.GuardedGpsGateway;
+
+// mémo : DependencyGuard ==> cloison et limite de débit par service, avec priorité aux requêtes interactives.
+public class TestDependencyGuard {
+
+    @Test
+    // vérifie que les appels de fond ne peuvent pas prendre le créneau réservé aux appels interactifs.
+    public void bulkheadKeepsASlotForInteractiveCalls() throws InterruptedException {
+        // given : 2 créneaux dont 1 réservé, le créneau partagé est occupé par un appel de fond.
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyGuard guard = new DependencyGuard("gps",
+                new GatewayProperties.Limits(2, 1, 0, 0, Duration.ofMillis(50)), registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> running = CompletableFuture.supplyAsync(() -> guard.call(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }));
+        started.await();
+
+        // when then : un 2ème appel de fond est refusé, un appel interactif passe.
+        assertThrows(GatewayRejectedException.class, () -> guard.call(() -> 2));
+        assertEquals(3, CallPriority.callWith(CallPriority.INTERACTIVE, () -> guard.call(() -> 3)));
+        assertEquals(1, guard.inFlight());
+        release.countDown();
+        assertEquals(1, running.join());
+
+        assertEquals(1, registry.get(DependencyGuard.GATEWAY_REJECTED)
+                .tags("service", "gps", "priority", "background", "reason", "bulkhead").counter().count());
+        assertEquals(0, guard.inFlight());
+    }
+
+    @Test
+    // vérifie que la limite de débit garde des jetons pour les appels interactifs et refuse les appels de fond en excès.
+    public void rateLimitKeepsTokensForInteractiveCalls() {
+        // given : 1 appel par seconde, 2 jetons dont 1 réservé.
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyGuard guard = new DependencyGuard("reward",
+                new GatewayProperties.Limits(10, 1, 1, 2, Duration.ofMillis(50)), registry);
+
+        // when then
+        assertEquals(1, guard.call(() -> 1));
+        assertThrows(GatewayRejectedException.class, () -> guard.call(() -> 2));
+        assertEquals(3, CallPriority.callWith(CallPriority.INTERACTIVE, () -> guard.call(() -> 3)));
+        assertEquals(1, registry.get(DependencyGuard.GATEWAY_REJECTED)
+                .tags("service", "reward", "priority", "background", "reason", "rate").counter().count());
+        assertEquals(2, registry.get(DependencyGuard.GATEWAY_WAIT).tags("service", "reward").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    // vérifie qu'un lot réparti sur un pool prend un créneau par appel : jamais plus d'appels simultanés que la cloison.
+    public void batchTakesOneSlotPerCall() {
+        // given : 2 créneaux, un lot de 20 utilisateurs réparti sur 10 threads.
+        DependencyGuard guard = new DependencyGuard("gps",
+                new GatewayProperties.Limits(2, 0, 0, 0, Duration.ofSeconds(10)), new SimpleMeterRegistry());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        GpsGateway delegate = new GpsGateway() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return new VisitedLocation(userId, new Location(0, 0), new Date());
+            }
+
+            @Override
+            public List<Attraction> getAttractions() {
+                return List.of();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        GuardedGpsGateway gateway = new GuardedGpsGateway(delegate, guard, executor, 10);
+        List<UUID> userIds = IntStream.range(0, 20).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+
+        // when
+        Map<UUID, VisitedLocation> locations = gateway.getUserLocations(userIds);
+        executor.shutdown();
+
+        // then
+        assertEquals(20, locations.size());
+        assertTrue(maxRunning.get() <= 2, "max running " + maxRunning.get());
+        assertEquals(0, guard.inFlight());
+    }
+
+}
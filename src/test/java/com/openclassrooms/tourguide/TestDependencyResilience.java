@@ -0,0 +1,163 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.gateway.CircuitBreaker;
+import com.openclassrooms.tourguide.gateway.DependencyResilience;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.GatewayRejectedException;
+import com.openclassrooms.tourguide.gateway.GatewayUnavailableException;
+
+// mémo : DependencyResilience ==> délai maximum, nouveaux essais avec gigue et disjoncteur par service.
+public class TestDependencyResilience {
+
+    private static GatewayProperties.Resilience resilience(Duration timeout, int maxAttempts, int failureThreshold,
+            Duration openDuration) {
+        return new GatewayProperties.Resilience(timeout, maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5),
+                failureThreshold, openDuration);
+    }
+
+    @Test
+    // vérifie qu'un appel bloqué est abandonné après le délai maximum, à chaque essai.
+    public void hungCallTimesOut() {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyResilience resilience = new DependencyResilience("gps",
+                resilience(Duration.ofMillis(50), 2, 10, Duration.ofSeconds(30)), 10, registry);
+
+        // when
+        long start = System.nanoTime();
+        assertThrows(GatewayException.class, () -> resilience.call(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }));
+        long elapsed = System.nanoTime() - start;
+        resilience.close();
+
+        // then
+        assertTrue(elapsed < Duration.ofSeconds(2).toNanos(), "elapsed " + elapsed);
+        assertEquals(2, registry.get(DependencyResilience.GATEWAY_TIMEOUTS).counter().count());
+        assertEquals(1, registry.get(DependencyResilience.GATEWAY_RETRIES).counter().count());
+    }
+
+    @Test
+    // vérifie qu'une erreur passagère est corrigée par un nouvel essai.
+    public void transientFailureIsRetried() {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyResilience resilience = new DependencyResilience("reward",
+                resilience(Duration.ofSeconds(1), 3, 10, Duration.ofSeconds(30)), 10, registry);
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        int result = resilience.call(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new GatewayException("transient");
+            }
+            return 42;
+        });
+        resilience.close();
+
+        // then
+        assertEquals(42, result);
+        assertEquals(3, calls.get());
+        assertEquals(2, registry.get(DependencyResilience.GATEWAY_RETRIES).counter().count());
+    }
+
+    @Test
+    // vérifie que le disjoncteur s'ouvre après des échecs consécutifs, refuse les appels, puis se referme après un essai réussi.
+    public void circuitOpensThenCloses() throws InterruptedException {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyResilience resilience = new DependencyResilience("pricing",
+                resilience(Duration.ofSeconds(1), 1, 2, Duration.ofMillis(100)), 10, registry);
+        AtomicInteger calls = new AtomicInteger();
+
+        // when : 2 échecs ouvrent le disjoncteur.
+        for (int i = 0; i < 2; i++) {
+            assertThrows(GatewayException.class, () -> resilience.call(() -> {
+                calls.incrementAndGet();
+                throw new GatewayException("down");
+            }));
+        }
+
+        // then : l'appel suivant est refusé sans être envoyé.
+        assertEquals(CircuitBreaker.State.OPEN, resilience.getCircuitState());
+        assertThrows(GatewayUnavailableException.class, () -> resilience.call(calls::incrementAndGet));
+        assertEquals(2, calls.get());
+        assertEquals(1, registry.get(DependencyResilience.GATEWAY_SHORT_CIRCUITED).counter().count());
+
+        // when : après la durée d'ouverture, un essai réussi referme le disjoncteur.
+        Thread.sleep(150);
+        assertEquals(3, resilience.call(calls::incrementAndGet));
+        resilience.close();
+
+        // then
+        assertEquals(CircuitBreaker.State.CLOSED, resilience.getCircuitState());
+    }
+
+    @Test
+    // vérifie qu'un appel bloqué qui ignore l'interruption garde son thread, et qu'au-delà de maxThreads l'appel est refusé.
+    public void hungCallsCannotTakeMoreThanMaxThreads() throws InterruptedException {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyResilience resilience = new DependencyResilience("gps",
+                resilience(Duration.ofMillis(20), 1, 10, Duration.ofSeconds(30)), 1, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        // when : le premier appel dépasse le délai maximum mais ne rend pas son thread.
+        assertThrows(GatewayException.class, () -> resilience.call(() -> {
+            calls.incrementAndGet();
+            while (true) {
+                try {
+                    release.await();
+                    return 1;
+                } catch (InterruptedException e) {
+                    // interruption ignorée, comme un appel bloqué dans une librairie.
+                }
+            }
+        }));
+
+        // then : le second appel n'est pas envoyé.
+        assertThrows(GatewayRejectedException.class, () -> resilience.call(calls::incrementAndGet));
+        assertEquals(1, calls.get());
+        assertEquals(1, registry.get(DependencyResilience.GATEWAY_CALL_THREADS).gauge().value());
+        assertEquals(CircuitBreaker.State.CLOSED, resilience.getCircuitState());
+        release.countDown();
+        resilience.close();
+    }
+
+    @Test
+    // vérifie que les appels tournent sur les threads de la fabrique donnée (threads virtuels en mode VIRTUAL).
+    public void callsRunOnTheGivenThreadFactory() {
+        // given
+        DependencyResilience resilience = new DependencyResilience("gps",
+                resilience(Duration.ofSeconds(1), 1, 10, Duration.ofSeconds(30)), 10,
+                runnable -> new Thread(runnable, "test-call"), new SimpleMeterRegistry());
+
+        // when
+        String threadName = resilience.call(() -> Thread.currentThread().getName());
+        resilience.close();
+
+        // then
+        assertEquals("test-call", threadName);
+    }
+
+}
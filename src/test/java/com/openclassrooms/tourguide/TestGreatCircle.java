@@ -0,0 +1,129 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.geo.DistanceKernel;
+import com.openclassrooms.tourguide.geo.GreatCircle;
+
+// mémo : GreatCircle / DistanceKernel ==> haversine, mêmes distances que l'ancienne formule acos (sans NaN).
+public class TestGreatCircle {
+
+    // ancienne formule de RewardsService.getDistance (loi des cosinus sphérique), référence de précision.
+    private static double legacyDistance(Location loc1, Location loc2) {
+        double lat1 = Math.toRadians(loc1.latitude);
+        double lon1 = Math.toRadians(loc1.longitude);
+        double lat2 = Math.toRadians(loc2.latitude);
+        double lon2 = Math.toRadians(loc2.longitude);
+        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+        return 1.15077945 * 60 * Math.toDegrees(angle);
+    }
+
+    private static Location randomLocation(Random random) {
+        return new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+    }
+
+    @Test
+    // compare avec l'ancienne formule : écart inférieur à la précision de acos (1e-4 mile) plus 1e-9 en relatif.
+    public void haversineMatchesLegacyFormula() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // given
+            Location from = randomLocation(random);
+            // une paire sur deux à courte distance, là où acos perd de la précision.
+            Location to = i % 2 == 0 ? randomLocation(random)
+                    : new Location(Math.max(-90, Math.min(90, from.latitude + random.nextGaussian())),
+                            from.longitude + random.nextGaussian());
+
+            // when
+            double distance = GreatCircle.distanceMiles(from, to);
+
+            // then
+            double legacy = legacyDistance(from, to);
+            if (!Double.isNaN(legacy)) {
+                assertEquals(legacy, distance, 1e-4 + 1e-9 * legacy, from + " " + to);
+            }
+        }
+    }
+
+    @Test
+    // vérifie qu'une distance nulle ne donne plus NaN, et la demi-circonférence pour deux points antipodaux.
+    public void identicalAndAntipodalPoints() {
+        // given
+        Location location = new Location(33.817595, -117.922008);
+        Location antipode = new Location(-33.817595, 62.077992);
+
+        // when
+        double zero = GreatCircle.distanceMiles(location, new Location(location.latitude, location.longitude));
+        double half = GreatCircle.distanceMiles(location, antipode);
+
+        // then
+        assertEquals(0, zero);
+        assertEquals(GreatCircle.HALF_CIRCUMFERENCE_MILES, half, 1e-6);
+    }
+
+    @Test
+    // vérifie que le calcul en masse et les recherches du noyau donnent les distances du calcul unitaire.
+    public void kernelMatchesScalarDistance() {
+        // given
+        Random random = new Random(7);
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(randomLocation(random));
+        }
+        DistanceKernel kernel = new DistanceKernel(points);
+        Location from = randomLocation(random);
+
+        // when
+        double[] distances = kernel.distancesFrom(from);
+        DistanceKernel.Search search = kernel.search(from, 1000);
+
+        // then
+        for (int i = 0; i < points.size(); i++) {
+            double expected = GreatCircle.distanceMiles(from, points.get(i));
+            assertEquals(expected, distances[i], 1e-9 + 1e-12 * expected);
+            assertEquals(expected, search.distanceMiles(i), 1e-9 + 1e-12 * expected);
+            assertEquals(expected, kernel.distanceMiles(i, from), 1e-9 + 1e-12 * expected);
+        }
+    }
+
+    @Test
+    // vérifie que la boîte englobante ne rejette jamais un point du cercle (pôles et antiméridien compris).
+    public void boundingBoxNeverRejectsPointsInTheCircle() {
+        Random random = new Random(3);
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            points.add(randomLocation(random));
+        }
+        DistanceKernel kernel = new DistanceKernel(points);
+        for (int round = 0; round < 500; round++) {
+            // given
+            Location from = round % 5 == 0 ? new Location(random.nextBoolean() ? 89.9 : -89.9, -180 + random.nextDouble() * 360)
+                    : randomLocation(random);
+            double radius = random.nextDouble() * (round % 2 == 0 ? 500 : 13_000);
+
+            // when
+            DistanceKernel.Search search = kernel.search(from, radius);
+
+            // then
+            for (int i = 0; i < points.size(); i++) {
+                double distance = GreatCircle.distanceMiles(from, points.get(i));
+                if (distance <= radius) {
+                    assertTrue(search.inBoundingBox(i), from + " " + points.get(i) + " " + radius);
+                    assertTrue(search.contains(i));
+                } else if (distance > radius * (1 + 1e-9)) {
+                    assertTrue(!search.contains(i));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.model.user.LocationHistory;
+import com.openclassrooms.tourguide.model.user.LocationRetentionPolicy;
+import com.openclassrooms.tourguide.model.user.LocationStorage;
+
+// mémo : LocationHistory ==> historique des positions optimisé pour les ajouts.
+public class TestLocationHistory {
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    // vérifie que l'ordre des ajouts est conservé à travers plusieurs blocs et qu'un snapshot ne voit pas les ajouts suivants.
+    public void addKeepsOrderAndSnapshotIsStable() {
+        // given
+        LocationHistory history = new LocationHistory();
+        List<VisitedLocation> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            VisitedLocation visitedLocation = newVisitedLocation(i);
+            expected.add(visitedLocation);
+            history.add(visitedLocation);
+        }
+
+        // when
+        List<VisitedLocation> snapshot = history.snapshot();
+        history.add(newVisitedLocation(1000));
+
+        // then
+        assertEquals(expected, snapshot);
+        assertEquals(1001, history.size());
+        assertEquals(1000, snapshot.size());
+        assertEquals(1000, history.getLast().location.latitude);
+    }
+
+    @Test
+    // vérifie que des lectures pendant des ajouts concurrents ne voient jamais de position manquante.
+    public void concurrentAppendsAndReads() {
+        // given
+        LocationHistory history = new LocationHistory();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        // when
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    history.add(newVisitedLocation(i));
+                }
+            }));
+        }
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            while (writing.get()) {
+                for (VisitedLocation visitedLocation : history.snapshot()) {
+                    assertNotNull(visitedLocation);
+                }
+            }
+        });
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).join();
+        writing.set(false);
+        reader.join();
+
+        // then
+        assertEquals(40_000, history.size());
+        assertSame(history.snapshot().get(39_999), history.getLast());
+        assertTrue(history.snapshot().stream().allMatch(v -> v != null));
+    }
+
+    @Test
+    // vérifie que maxEntries supprime les plus anciennes positions, mais jamais celles non traitées par les récompenses.
+    public void retentionKeepsUnprocessedLocations() {
+        // given
+        LocationHistory history = new LocationHistory();
+        LocationRetentionPolicy policy = new LocationRetentionPolicy(10, null, null, null);
+        long now = System.currentTimeMillis();
+
+        // when : rien n'est traité puis les 90 premières positions sont traitées.
+        for (int i = 0; i < 50; i++) {
+            history.add(newVisitedLocation(i), policy, 0, now);
+        }
+        int sizeWithoutProcessing = history.size();
+        for (int i = 50; i < 100; i++) {
+            history.add(newVisitedLocation(i), policy, 90, now);
+        }
+
+        // then
+        assertEquals(50, sizeWithoutProcessing);
+        assertEquals(100, history.getNextSequence());
+        assertEquals(10, history.size());
+        // les positions non traitées sont toujours là, avec leur numéro de séquence.
+        LocationHistory.Slice slice = history.since(90);
+        assertEquals(10, slice.locations().size());
+        assertEquals(90, slice.locations().get(0).location.latitude);
+        assertEquals(100, slice.nextSequence());
+        assertEquals(99, history.getLast().location.latitude);
+    }
+
+    @Test
+    // vérifie que maxEntries est respecté dès l'ajout qui le dépasse, et non à la reconstruction suivante de l'historique.
+    public void maxEntriesIsNeverExceeded() {
+        // given
+        LocationHistory history = new LocationHistory(userId, LocationStorage.COLUMNAR);
+        LocationRetentionPolicy policy = new LocationRetentionPolicy(10, null, null, null);
+        long now = System.currentTimeMillis();
+
+        // when then : toutes les positions sont déjà traitées.
+        for (int i = 0; i < 1000; i++) {
+            history.add(newVisitedLocation(i), policy, Long.MAX_VALUE, now);
+            assertEquals(Math.min(i + 1, 10), history.size());
+            assertEquals(Math.min(i + 1, 10), history.snapshot().size());
+            assertEquals(Math.max(0, i - 9), history.snapshot().get(0).location.latitude);
+        }
+        assertEquals(1000, history.getNextSequence());
+        assertEquals(10, history.since(0).locations().size());
+        assertEquals(990, history.since(0).locations().get(0).location.latitude);
+        assertEquals(List.of(998.0, 999.0),
+                history.since(998).locations().stream().map(v -> v.location.latitude).toList());
+    }
+
+    @Test
+    // vérifie la suppression des positions trop anciennes et le sous-échantillonnage (une position par heure).
+    public void retentionRemovesOldAndDownsamples() {
+        // given
+        LocationHistory history = new LocationHistory();
+        LocationRetentionPolicy policy = new LocationRetentionPolicy(0, Duration.ofDays(2), Duration.ofHours(1),
+                Duration.ofHours(1));
+        long now = System.currentTimeMillis();
+        long start = now - Duration.ofDays(3).toMillis();
+
+        // when : une position toutes les 10 minutes pendant 3 jours, toutes déjà traitées.
+        int count = (int) (Duration.ofDays(3).toMinutes() / 10);
+        for (int i = 0; i < count; i++) {
+            Date time = new Date(start + Duration.ofMinutes(10L * i).toMillis());
+            history.add(new VisitedLocation(userId, new Location(i, i), time), policy, Long.MAX_VALUE, now);
+        }
+
+        // then
+        long oldest = history.snapshot().get(0).timeVisited.getTime();
+        assertTrue(oldest >= now - Duration.ofDays(2).toMillis() - Duration.ofHours(1).toMillis());
+        // environ 48 positions (une par heure) + les positions récentes non sous-échantillonnées.
+        assertTrue(history.size() < 100, "size " + history.size());
+        assertEquals(count, history.getNextSequence());
+    }
+
+    @Test
+    // vérifie que le stockage en colonnes restitue les mêmes positions et que le changement de stockage les conserve.
+    public void columnarStorageKeepsLocations() {
+        // given
+        LocationHistory history = new LocationHistory(userId, LocationStorage.OBJECTS);
+        List<VisitedLocation> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            VisitedLocation visitedLocation = newVisitedLocation(i);
+            expected.add(visitedLocation);
+            history.add(visitedLocation);
+        }
+
+        // when
+        history.setStorage(LocationStorage.COLUMNAR);
+        VisitedLocation added = newVisitedLocation(100);
+        expected.add(added);
+        history.add(added);
+
+        // then
+        assertEquals(LocationStorage.COLUMNAR, history.getStorage());
+        List<VisitedLocation> snapshot = history.snapshot();
+        assertEquals(expected.size(), snapshot.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(userId, snapshot.get(i).userId);
+            assertEquals(expected.get(i).location.latitude, snapshot.get(i).location.latitude);
+            assertEquals(expected.get(i).location.longitude, snapshot.get(i).location.longitude);
+            assertEquals(expected.get(i).timeVisited, snapshot.get(i).timeVisited);
+        }
+    }
+
+    @Test
+    // vérifie que le stockage en colonnes garde l'identifiant d'une position d'un autre utilisateur, et la lecture des coordonnées.
+    public void columnarStorageKeepsOtherUserIdsAndCoordinates() {
+        // given
+        LocationHistory history = new LocationHistory(userId, LocationStorage.COLUMNAR);
+        UUID otherUserId = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            history.add(i == 10 ? new VisitedLocation(otherUserId, new Location(i, -i), new Date())
+                    : new VisitedLocation(userId, new Location(i, -i), new Date()));
+        }
+
+        // when
+        LocationHistory.Slice slice = history.since(5);
+
+        // then
+        assertEquals(15, slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            assertEquals(i + 5, slice.latitude(i));
+            assertEquals(-(i + 5), slice.longitude(i));
+            assertEquals(i + 5 == 10 ? otherUserId : userId, slice.locations().get(i).userId);
+        }
+    }
+
+    private VisitedLocation newVisitedLocation(int i) {
+        return new VisitedLocation(userId, new Location(i, i), new Date());
+    }
+
+}
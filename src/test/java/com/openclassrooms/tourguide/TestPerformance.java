@@ -1,5 +1,6 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
@@ -15,6 +16,9 @@ import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 
+import com.openclassrooms.tourguide.concurrent.ExecutionMode;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.config.ExecutorProperties;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
@@ -32,16 +36,38 @@ public class TestPerformance {
      * 
      */
 
+    /*
+     * comparaison threads système / threads virtuels sans modifier le code :
+     * mvn test -Dtest=TestPerformance -Dtourguide.users=100000 -Dtourguide.executor.mode=VIRTUAL
+     * (VIRTUAL nécessite un runtime Java 21 : sinon les pools reviennent en PLATFORM et le test échoue, pour ne pas publier
+     * des temps PLATFORM sous le nom VIRTUAL).
+     */
+    private static final int USER_NUMBER = Integer.getInteger("tourguide.users", 100);
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode
+            .valueOf(System.getProperty("tourguide.executor.mode", ExecutionMode.PLATFORM.name()));
+
+    private static RewardsService newRewardsService(GpsUtil gpsUtil) {
+        ExecutorProperties executorProperties = new ExecutorProperties();
+        executorProperties.setMode(EXECUTION_MODE);
+        TourGuideExecutors executors = new TourGuideExecutors(executorProperties);
+        if (executors.getMode() != EXECUTION_MODE) {
+            executors.close();
+        }
+        assertEquals(EXECUTION_MODE, executors.getMode(), "Mode " + EXECUTION_MODE + " not available on Java "
+                + Runtime.version() + " (requires Java 21), the measure would be the one of " + executors.getMode());
+        return new RewardsService(gpsUtil, new RewardCentral(), executors);
+    }
+
     /*
      * ce test mesure le temps nécessaire pour localiser 100 000 utilisateurs, enregistrer leur position, et calculer leurs récompenses, le tout devant être exécuté en moins de 15 minutes.
      */
     @Test
     public void highVolumeTrackLocation() {
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = newRewardsService(gpsUtil);
         // Users should be incremented up to 100,000, and test finishes within 15 minutes
 //        InternalTestHelper.setInternalUserNumber(100000);
-        InternalTestHelper.setInternalUserNumber(100);
+        InternalTestHelper.setInternalUserNumber(USER_NUMBER);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
         // récupération de l'ensemble des utilisateurs.
@@ -58,8 +84,9 @@ public class TestPerformance {
         // fin chronomètre.
         stopWatch.stop();
         tourGuideService.tracker.stopTracking();
+        rewardsService.getExecutors().close();
 
-        System.out.println("highVolumeTrackLocation: Time Elapsed: "
+        System.out.println("highVolumeTrackLocation (" + rewardsService.getExecutors().getMode() + "): Time Elapsed: "
                 + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
         assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
     }
@@ -70,11 +97,11 @@ public class TestPerformance {
     @Test
     public void highVolumeGetRewards() {
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = newRewardsService(gpsUtil);
 
         // Users should be incremented up to 100,000, and test finishes within 20 minutes
 //        InternalTestHelper.setInternalUserNumber(100000);
-        InternalTestHelper.setInternalUserNumber(100);
+        InternalTestHelper.setInternalUserNumber(USER_NUMBER);
 
         // début chronomètre.
         StopWatch stopWatch = new StopWatch();
@@ -102,8 +129,9 @@ public class TestPerformance {
         // fin chronomètre.
         stopWatch.stop();
         tourGuideService.tracker.stopTracking();
+        rewardsService.getExecutors().close();
 
-        System.out.println("highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
+        System.out.println("highVolumeGetRewards (" + rewardsService.getExecutors().getMode() + "): Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
                 + " seconds.");
         assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
     }
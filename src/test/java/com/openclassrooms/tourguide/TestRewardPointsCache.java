@@ -0,0 +1,89 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.gateway.RewardCentralGateway;
+
+// mémo : RewardPointsCache ==> cache des points de récompense devant RewardCentral.
+public class TestRewardPointsCache {
+
+    // RewardCentral qui compte ses appels et répond toujours la même valeur après une attente.
+    private static class CountingRewardCentral extends RewardCentral {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 42;
+        }
+    }
+
+    @Test
+    // vérifie que RewardCentral n'est appelé qu'une fois par couple (attraction, utilisateur).
+    public void getCachesRewardPoints() {
+        // given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        RewardPointsCache cache = new RewardPointsCache(new RewardCentralGateway(rewardCentral), executor,
+                new CacheProperties.Spec(100, Duration.ofMinutes(1)));
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        // when
+        int first = cache.get(attractionId, userId);
+        int second = cache.get(attractionId, userId);
+        cache.get(UUID.randomUUID(), userId);
+        executor.shutdown();
+
+        // then
+        assertEquals(42, first);
+        assertEquals(42, second);
+        assertEquals(2, rewardCentral.calls.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    // vérifie que des demandes simultanées pour le même couple ne déclenchent qu'un seul appel (single-flight).
+    public void concurrentRequestsShareOneCall() {
+        // given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        RewardPointsCache cache = new RewardPointsCache(new RewardCentralGateway(rewardCentral), executor,
+                new CacheProperties.Spec(100, Duration.ofMinutes(1)));
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        // when
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(cache.getAsync(attractionId, userId));
+        }
+        futures.forEach(CompletableFuture::join);
+        executor.shutdown();
+
+        // then
+        assertEquals(1, rewardCentral.calls.get());
+    }
+
+}
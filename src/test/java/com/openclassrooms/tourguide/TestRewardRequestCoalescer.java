@@ -0,0 +1,137 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.RewardGateway;
+import com.openclassrooms.tourguide.gateway.RewardRequest;
+import com.openclassrooms.tourguide.gateway.RewardRequestCoalescer;
+
+// mémo : RewardRequestCoalescer ==> regroupe en lots les demandes de points arrivées dans une même fenêtre.
+public class TestRewardRequestCoalescer {
+
+    // service qui garde la taille de chaque lot reçu, sans réponse pour l'attraction "unknown".
+    private static class BatchRewardGateway implements RewardGateway {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final UUID unknown;
+
+        BatchRewardGateway(UUID unknown) {
+            this.unknown = unknown;
+        }
+
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            throw new UnsupportedOperationException("batch only");
+        }
+
+        @Override
+        public Map<RewardRequest, Integer> getAttractionRewardPoints(Collection<RewardRequest> requests) {
+            batchSizes.add(requests.size());
+            Map<RewardRequest, Integer> points = new HashMap<>();
+            requests.stream().filter(r -> !r.attractionId().equals(unknown)).forEach(r -> points.put(r, 7));
+            return points;
+        }
+    }
+
+    @Test
+    // vérifie que les demandes d'une même fenêtre partent en un seul lot, une paire demandée deux fois n'étant envoyée qu'une fois.
+    public void requestsInAWindowAreSentAsOneBatch() {
+        // given
+        BatchRewardGateway gateway = new BatchRewardGateway(null);
+        RewardRequestCoalescer coalescer = new RewardRequestCoalescer(gateway, Duration.ofMillis(100), 100, 2);
+        UUID userId = UUID.randomUUID();
+        UUID attractionId = UUID.randomUUID();
+
+        // when
+        CompletableFuture<Integer> first = coalescer.submit(attractionId, userId);
+        CompletableFuture<Integer> same = coalescer.submit(attractionId, userId);
+        CompletableFuture<Integer> other = coalescer.submit(UUID.randomUUID(), userId);
+        CompletableFuture.allOf(first, same, other).join();
+        coalescer.close();
+
+        // then
+        assertEquals(List.of(2), gateway.batchSizes);
+        assertEquals(7, first.join());
+        assertEquals(7, same.join());
+        assertEquals(7, other.join());
+    }
+
+    @Test
+    // vérifie qu'un lot plein est envoyé sans attendre la fin de sa fenêtre.
+    public void fullBatchIsSentImmediately() {
+        // given
+        BatchRewardGateway gateway = new BatchRewardGateway(null);
+        RewardRequestCoalescer coalescer = new RewardRequestCoalescer(gateway, Duration.ofSeconds(30), 3, 2);
+        UUID userId = UUID.randomUUID();
+
+        // when
+        long start = System.nanoTime();
+        CompletableFuture.allOf(coalescer.submit(UUID.randomUUID(), userId), coalescer.submit(UUID.randomUUID(), userId),
+                coalescer.submit(UUID.randomUUID(), userId)).join();
+        long elapsed = System.nanoTime() - start;
+        coalescer.close();
+
+        // then
+        assertEquals(List.of(3), gateway.batchSizes);
+        assertTrue(elapsed < Duration.ofSeconds(5).toNanos(), "elapsed " + elapsed);
+    }
+
+    @Test
+    // vérifie qu'une paire sans réponse échoue seule, les autres demandes du lot sont servies.
+    public void missingPairFailsAlone() {
+        // given
+        UUID unknown = UUID.randomUUID();
+        RewardRequestCoalescer coalescer = new RewardRequestCoalescer(new BatchRewardGateway(unknown),
+                Duration.ofMillis(20), 100, 2);
+        UUID userId = UUID.randomUUID();
+
+        // when
+        CompletableFuture<Integer> failing = coalescer.submit(unknown, userId);
+        CompletableFuture<Integer> ok = coalescer.submit(UUID.randomUUID(), userId);
+
+        // then
+        assertEquals(7, ok.join());
+        CompletionException error = assertThrows(CompletionException.class, failing::join);
+        assertInstanceOf(GatewayException.class, error.getCause());
+        coalescer.close();
+    }
+
+    @Test
+    // vérifie que le cache envoie ses absences par lots au travers du coalesceur.
+    public void cacheLoadsThroughCoalescer() {
+        // given
+        BatchRewardGateway gateway = new BatchRewardGateway(null);
+        RewardPointsCache cache = new RewardPointsCache(
+                new RewardRequestCoalescer(gateway, Duration.ofMillis(50), 100, 2), Executors.newCachedThreadPool(),
+                new CacheProperties().getRewardPoints());
+        UUID userId = UUID.randomUUID();
+
+        // when
+        List<CompletableFuture<Integer>> futures = List.of(cache.getAsync(UUID.randomUUID(), userId),
+                cache.getAsync(UUID.randomUUID(), userId), cache.getAsync(UUID.randomUUID(), userId));
+        futures.forEach(CompletableFuture::join);
+        cache.close();
+
+        // then
+        assertEquals(List.of(3), gateway.batchSizes);
+    }
+
+}
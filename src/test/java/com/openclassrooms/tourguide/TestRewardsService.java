@@ -6,15 +6,20 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.IntStream;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import lombok.extern.log4j.Log4j2;
 import rewardCentral.RewardCentral;
 
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.model.user.UserReward;
 import com.openclassrooms.tourguide.service.RewardsService;
@@ -25,13 +30,21 @@ import com.openclassrooms.tourguide.util.InternalTestHelper;
 // mémo : RewardsService ==> service permettant le calcul des récompenses en fonction des lieux visités et l'évaluation de la distance entre un utilisateur et une attraction.
 public class TestRewardsService {
 
+    // pools des services construits dans un test, arrêtés à la fin du test.
+    private final TourGuideExecutors executors = new TourGuideExecutors();
+
+    @AfterEach
+    public void closeExecutors() {
+        executors.close();
+    }
+
     @Test
     // vérifie qu'un utilisateur reçoit une récompense lorsqu'il a visité un lieu.
     public void userGetRewards() {
         log.debug("......................DEBUT TEST OK userGetRewards......................");
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
@@ -54,7 +67,7 @@ public class TestRewardsService {
         log.debug("......................DEBUT TEST OK isWithinAttractionProximity......................");
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         Attraction attraction = gpsUtil.getAttractions().get(0);
 
         // when then
@@ -71,7 +84,7 @@ public class TestRewardsService {
 
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         // distance de proximité au maximum ==> toutes les attractions possibles vont correspondres.
         rewardsService.setProximityBuffer(Integer.MAX_VALUE);
         // un utilisateur simulé uniquement.
@@ -92,4 +105,79 @@ public class TestRewardsService {
         log.debug("......................FIN TEST HS nearAllAttractions......................");
     }
     
+    @Test
+    // vérifie que seules les nouvelles positions sont traitées, et que tout est recalculé quand la règle de proximité change.
+    public void calculateRewardsIsIncremental() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        // position éloignée de toutes les attractions.
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getRewardsProgress().processedLocations());
+        assertEquals(0, user.getUserRewards().size());
+
+        // when
+        // une nouvelle position sur une attraction : seule celle-ci est traitée.
+        Attraction attraction = rewardsService.getAttractions().get(0);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        rewardsService.calculateRewards(user);
+
+        // then
+        assertEquals(2, user.getRewardsProgress().processedLocations());
+        assertEquals(1, user.getUserRewards().size());
+
+        // when
+        // proximité maximale : l'ancienne génération est ignorée, tout l'historique est de nouveau traité.
+        long generation = user.getRewardsProgress().generation();
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+        rewardsService.calculateRewards(user);
+
+        // then
+        assertTrue(user.getRewardsProgress().generation() > generation);
+        assertEquals(rewardsService.getAttractions().size(), user.getUserRewards().size());
+    }
+
+    @Test
+    // vérifie que des ajouts simultanés de récompenses pour la même attraction n'en conservent qu'une seule,
+    // et que seuls ses points sont comptés dans le total de l'utilisateur.
+    public void addUserRewardIsAtomic() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil();
+        Attraction attraction = gpsUtil.getAttractions().get(0);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+
+        // when
+        IntStream.range(0, 1000).parallel()
+                .forEach(i -> user.addUserReward(new UserReward(visitedLocation, attraction, i)));
+
+        // then
+        assertEquals(1, user.getUserRewards().size());
+        assertTrue(user.hasRewardFor(attraction));
+        assertEquals(user.getUserRewards().get(0).getRewardPoints(), user.getTotalRewardPoints());
+    }
+
+    @Test
+    // vérifie que le parcours des positions de chaque utilisateur est fait par le pool cpu, et non par le thread appelant.
+    public void calculateRewardsByUsersScansOnTheCpuPool() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        Attraction attraction = rewardsService.getAttractions().get(0);
+        List<User> users = IntStream.range(0, 3).mapToObj(i -> {
+            User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+            return user;
+        }).toList();
+
+        // when
+        rewardsService.calculateRewardsByUsers(users);
+
+        // then
+        assertTrue(users.stream().allMatch(user -> user.getUserRewards().size() >= 1));
+        assertEquals(3, ((ThreadPoolExecutor) executors.cpu()).getTaskCount());
+    }
+
 }
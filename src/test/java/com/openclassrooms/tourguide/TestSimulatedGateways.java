@@ -0,0 +1,208 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.LatencyDistribution;
+import com.openclassrooms.tourguide.gateway.LatencySimulator;
+import com.openclassrooms.tourguide.gateway.SimulatedGpsGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedPricingGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedRewardGateway;
+
+// mémo : passerelles simulées ==> latence, erreurs et débit configurables, résultats reproductibles.
+public class TestSimulatedGateways {
+
+    private static GatewayProperties.Simulation simulation(Duration latency, double errorRate, int maxCallsPerSecond) {
+        return new GatewayProperties.Simulation(LatencyDistribution.FIXED, latency, latency, errorRate, maxCallsPerSecond, 42);
+    }
+
+    @Test
+    // vérifie que les points ne dépendent que du couple (attraction, utilisateur) et restent dans les bornes de RewardCentral.
+    public void rewardPointsAreReproducible() {
+        // given
+        SimulatedRewardGateway gateway = new SimulatedRewardGateway(
+                new LatencySimulator("reward", simulation(Duration.ZERO, 0, 0)));
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        // when
+        int points = gateway.getAttractionRewardPoints(attractionId, userId);
+
+        // then
+        assertEquals(points, gateway.getAttractionRewardPoints(attractionId, userId));
+        assertTrue(points >= 1 && points <= 1000);
+    }
+
+    @Test
+    // vérifie que les offres sont reproductibles, au nombre de 5 comme TripPricer.
+    public void pricingReturnsFiveReproducibleOffers() {
+        // given
+        SimulatedPricingGateway gateway = new SimulatedPricingGateway(
+                new LatencySimulator("pricing", simulation(Duration.ZERO, 0, 0)));
+        UUID userId = UUID.randomUUID();
+
+        // when
+        List<Provider> providers = gateway.getPrice("key", userId, 2, 1, 3, 100);
+
+        // then
+        assertEquals(5, providers.size());
+        List<Provider> again = gateway.getPrice("key", userId, 2, 1, 3, 100);
+        for (int i = 0; i < providers.size(); i++) {
+            assertEquals(providers.get(i).name, again.get(i).name);
+            assertEquals(providers.get(i).price, again.get(i).price);
+            assertEquals(providers.get(i).tripId, again.get(i).tripId);
+        }
+    }
+
+    @Test
+    // vérifie le taux d'erreur (0 et 1) et la latence fixe.
+    public void errorRateAndLatency() {
+        // given
+        LatencySimulator alwaysFails = new LatencySimulator("reward", simulation(Duration.ZERO, 1, 0));
+        LatencySimulator slow = new LatencySimulator("reward", simulation(Duration.ofMillis(20), 0, 0));
+
+        // when
+        long start = System.nanoTime();
+        slow.call("getAttractionRewardPoints", UUID.randomUUID());
+        long elapsed = System.nanoTime() - start;
+
+        // then
+        assertThrows(GatewayException.class, () -> alwaysFails.call("getAttractionRewardPoints", UUID.randomUUID()));
+        assertTrue(elapsed >= Duration.ofMillis(20).toNanos());
+    }
+
+    @Test
+    // vérifie que les erreurs ne dépendent que de la demande, pas de l'ordre des appels des autres demandes (un générateur par appel).
+    public void errorsDependOnTheRequestNotOnTheOrderOfCalls() {
+        // given
+        LatencySimulator forward = new LatencySimulator("gps", simulation(Duration.ZERO, 0.5, 0));
+        LatencySimulator backward = new LatencySimulator("gps", simulation(Duration.ZERO, 0.5, 0));
+        List<UUID> userIds = IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // when
+        Set<UUID> forwardFailures = new HashSet<>();
+        for (UUID userId : userIds) {
+            if (fails(forward, userId)) {
+                forwardFailures.add(userId);
+            }
+        }
+        Set<UUID> backwardFailures = new HashSet<>();
+        for (int i = userIds.size() - 1; i >= 0; i--) {
+            if (fails(backward, userIds.get(i))) {
+                backwardFailures.add(userIds.get(i));
+            }
+        }
+
+        // then
+        assertEquals(forwardFailures, backwardFailures);
+        assertTrue(!forwardFailures.isEmpty() && forwardFailures.size() < userIds.size());
+    }
+
+    @Test
+    // vérifie qu'une demande en erreur peut réussir à l'appel suivant : le tirage dépend aussi du numéro de l'appel.
+    public void failedRequestCanSucceedOnTheNextCall() {
+        // given
+        LatencySimulator simulator = new LatencySimulator("gps", simulation(Duration.ZERO, 0.5, 0));
+        UUID userId = UUID.randomUUID();
+
+        // when
+        int failures = 0;
+        for (int i = 0; i < 50; i++) {
+            if (fails(simulator, userId)) {
+                failures++;
+            }
+        }
+
+        // then
+        assertTrue(failures > 0 && failures < 50, "failures " + failures);
+    }
+
+    @Test
+    // vérifie que les positions d'un utilisateur ne dépendent pas de l'ordre des appels des autres utilisateurs.
+    public void locationsAreReproducible() {
+        // given
+        SimulatedGpsGateway first = new SimulatedGpsGateway(
+                new LatencySimulator("gps", simulation(Duration.ZERO, 0, 0)), List.of());
+        SimulatedGpsGateway second = new SimulatedGpsGateway(
+                new LatencySimulator("gps", simulation(Duration.ZERO, 0, 0)), List.of());
+        UUID jon = UUID.randomUUID();
+        UUID ann = UUID.randomUUID();
+
+        // when
+        VisitedLocation firstJon1 = first.getUserLocation(jon);
+        VisitedLocation firstJon2 = first.getUserLocation(jon);
+        VisitedLocation firstAnn1 = first.getUserLocation(ann);
+        VisitedLocation secondAnn1 = second.getUserLocation(ann);
+        VisitedLocation secondJon1 = second.getUserLocation(jon);
+        VisitedLocation secondJon2 = second.getUserLocations(List.of(jon)).get(jon);
+
+        // then
+        assertEquals(firstJon1.location.latitude, secondJon1.location.latitude);
+        assertEquals(firstJon1.location.longitude, secondJon1.location.longitude);
+        assertEquals(firstJon2.location.latitude, secondJon2.location.latitude);
+        assertEquals(firstAnn1.location.longitude, secondAnn1.location.longitude);
+        assertTrue(firstJon1.location.latitude != firstJon2.location.latitude);
+    }
+
+    private static boolean fails(LatencySimulator simulator, UUID userId) {
+        try {
+            simulator.call("getUserLocation", userId);
+            return false;
+        } catch (GatewayException e) {
+            return true;
+        }
+    }
+
+    @Test
+    // vérifie que la limite de débit espace les appels : 11 appels à 100/s prennent au moins 100 ms.
+    public void throughputCap() {
+        // given
+        LatencySimulator simulator = new LatencySimulator("gps", simulation(Duration.ZERO, 0, 100));
+
+        // when
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            simulator.call("getUserLocation", i);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // then
+        assertTrue(elapsed >= Duration.ofMillis(100).toNanos(), "elapsed " + elapsed);
+    }
+
+    @Test
+    // vérifie qu'un lot de localisations est traité comme une seule requête : une seule latence pour tout le lot.
+    public void batchLocationHasASingleLatency() {
+        // given
+        SimulatedGpsGateway gateway = new SimulatedGpsGateway(
+                new LatencySimulator("gps", simulation(Duration.ofMillis(50), 0, 0)), List.of());
+        List<UUID> userIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        // when
+        long start = System.nanoTime();
+        Map<UUID, VisitedLocation> locations = gateway.getUserLocations(userIds);
+        long elapsed = System.nanoTime() - start;
+
+        // then
+        assertEquals(4, locations.size());
+        userIds.forEach(userId -> assertEquals(userId, locations.get(userId).userId));
+        assertTrue(elapsed < Duration.ofMillis(150).toNanos(), "elapsed " + elapsed);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.gateway.GatewayException;
+import com.openclassrooms.tourguide.gateway.MeteredRewardGateway;
+import com.openclassrooms.tourguide.gateway.RewardGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.model.user.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.util.InternalTestHelper;
+
+// mémo : TourGuideMetrics ==> chronomètres des appels externes et des phases du Tracker, compteurs, jauges des pools.
+public class TestTourGuideMetrics {
+
+    // pools des services construits dans un test, arrêtés à la fin du test.
+    private final TourGuideExecutors executors = new TourGuideExecutors();
+
+    @AfterEach
+    public void closeExecutors() {
+        executors.close();
+    }
+
+    @Test
+    // vérifie que chaque appel externe est chronométré avec son résultat (success / error).
+    public void gatewayCallsAreTimedWithOutcome() {
+        // given
+        TourGuideMetrics metrics = new TourGuideMetrics(new SimpleMeterRegistry());
+        RewardGateway failing = (attractionId, userId) -> {
+            throw new GatewayException("down");
+        };
+        RewardGateway ok = new MeteredRewardGateway((attractionId, userId) -> 10, metrics);
+        RewardGateway ko = new MeteredRewardGateway(failing, metrics);
+
+        // when
+        ok.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+        ok.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+        assertThrows(GatewayException.class, () -> ko.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID()));
+
+        // then
+        MeterRegistry registry = metrics.getRegistry();
+        assertEquals(2, registry.get(TourGuideMetrics.GATEWAY_CALLS).tags("service", "reward", "outcome", "success")
+                .timer().count());
+        assertEquals(1, registry.get(TourGuideMetrics.GATEWAY_CALLS).tags("service", "reward", "outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    // vérifie que les phases du suivi d'un utilisateur sont chronométrées et que les récompenses sont comptées.
+    public void trackerPhasesAndRewardsAreRecorded() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        Attraction attraction = rewardsService.getAttractions().get(0);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+        // when
+        tourGuideService.trackUserLocation(user);
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        TourGuideMetrics metrics = tourGuideService.getMetrics();
+        assertEquals(1, metrics.locationPhase().count());
+        assertEquals(1, metrics.historyPhase().count());
+        assertEquals(1, metrics.rewardsPhase().count());
+        assertEquals(user.getUserRewards().size(), (int) metrics.rewardsGranted().count());
+    }
+
+    @Test
+    // vérifie que les jauges des pools sont enregistrées.
+    public void executorGaugesAreBound() {
+        // given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        try (TourGuideExecutors executors = new TourGuideExecutors()) {
+
+            // when
+            executors.bindTo(registry);
+
+            // then
+            assertNotNull(registry.find("tourguide.executor.queue.size").tag("pool", "gps").gauge());
+            assertEquals(0, registry.get("tourguide.executor.active").tag("pool", "reward").gauge().value());
+        }
+    }
+
+}
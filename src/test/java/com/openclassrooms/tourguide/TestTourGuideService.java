@@ -5,25 +5,58 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.config.ExecutorProperties;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.config.HistoryProperties;
+import com.openclassrooms.tourguide.config.TrackerProperties;
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.gateway.DependencyResilience;
+import com.openclassrooms.tourguide.gateway.GpsUtilGateway;
+import com.openclassrooms.tourguide.gateway.PricingGateway;
+import com.openclassrooms.tourguide.gateway.ResilientGpsGateway;
+import com.openclassrooms.tourguide.gateway.TripPricerGateway;
+import com.openclassrooms.tourguide.model.user.NearbyAttractionsSnapshot;
 import com.openclassrooms.tourguide.model.user.User;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsAggregator;
 import com.openclassrooms.tourguide.util.InternalTestHelper;
 
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 public class TestTourGuideService {
 
+    // pools des services construits dans un test, arrêtés à la fin du test.
+    private final TourGuideExecutors executors = new TourGuideExecutors();
+
+    @AfterEach
+    public void closeExecutors() {
+        executors.close();
+    }
+
     public static final int MAX_TRIP_DEALS = 5;
 
     /*
@@ -35,7 +68,7 @@ public class TestTourGuideService {
     public void getUserLocationWithNoHistory() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
@@ -60,7 +93,7 @@ public class TestTourGuideService {
     public void getUserLocationWithHistory() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
@@ -87,7 +120,7 @@ public class TestTourGuideService {
     public void addUser() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
@@ -115,7 +148,7 @@ public class TestTourGuideService {
     public void getAllUsers() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
@@ -144,7 +177,7 @@ public class TestTourGuideService {
     public void trackUser() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
@@ -166,7 +199,7 @@ public class TestTourGuideService {
     public void getNearbyAttractions() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
@@ -182,6 +215,92 @@ public class TestTourGuideService {
         assertEquals(TourGuideService.MAX_NEARBY_ATTRACTIONS, attractions.size());
     }
 
+    /*
+     * Vérifie que getRewardPoints n'est appelé que pour les attractions retournées et qu'elles sont triées de la plus proche à la plus lointaine.
+     */
+    @Test
+    public void getNearbyAttractionsCallsRewardCentralForWinnersOnly() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil();
+        AtomicInteger rewardCentralCalls = new AtomicInteger();
+        RewardCentral rewardCentral = new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                rewardCentralCalls.incrementAndGet();
+                return 1;
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral, executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+
+        // when
+        List<NearByAttractionDTO> attractions = tourGuideService.getNearByAttractions(visitedLocation, user);
+
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        assertEquals(TourGuideService.MAX_NEARBY_ATTRACTIONS, rewardCentralCalls.get());
+        for (int i = 1; i < attractions.size(); i++) {
+            assertTrue(attractions.get(i - 1).getDistanceToAttraction() <= attractions.get(i).getDistanceToAttraction());
+        }
+    }
+
+    /*
+     * vérifie que le suivi précalcule les attractions proches lues ensuite par getNearByAttractions,
+     * et qu'elles sont recalculées quand l'utilisateur se déplace ou que le catalogue est rechargé.
+     */
+    @Test
+    public void nearbyAttractionsArePrecomputedByTheTracker() {
+        // given
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                return new VisitedLocation(userId, new Location(33.817595, -117.922008), new Date());
+            }
+        };
+        RewardCentral rewardCentral = new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                return 1;
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral, executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setPrecomputeNearbyAttractions(true);
+        TourGuideService tourGuideService = new TourGuideService(new GpsUtilGateway(gpsUtil), rewardsService,
+                rewardsService.getExecutors(), new HistoryProperties(),
+                new TripDealsAggregator(new TripPricerGateway(new TripPricer()), rewardsService.getExecutors().pricing(),
+                        new TripDealsCache(new CacheProperties().getTripDeals()), new GatewayProperties().getPricingFanOut(),
+                        rewardsService.getMetrics()),
+                trackerProperties);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // when
+        tourGuideService.trackUserLocationByUsers(List.of(user));
+        NearbyAttractionsSnapshot precomputed = user.getNearbyAttractions();
+        List<NearByAttractionDTO> attractions = tourGuideService.getNearByAttractions(user.getLastVisitedLocation(), user);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(40.0, -100.0), new Date()));
+        tourGuideService.getNearByAttractions(user.getLastVisitedLocation(), user);
+        NearbyAttractionsSnapshot moved = user.getNearbyAttractions();
+        rewardsService.reloadAttractions();
+        tourGuideService.getNearByAttractions(user.getLastVisitedLocation(), user);
+        NearbyAttractionsSnapshot reloaded = user.getNearbyAttractions();
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        assertNotNull(precomputed);
+        assertSame(precomputed.attractions(), attractions);
+        assertEquals(TourGuideService.MAX_NEARBY_ATTRACTIONS, attractions.size());
+        assertEquals(40.0, moved.latitude());
+        assertEquals(precomputed.catalogueVersion() + 1, reloaded.catalogueVersion());
+        assertTrue(reloaded.isValidFor(user.getLastVisitedLocation(), rewardsService.getCatalogueVersion()));
+    }
+
     /*
      * vérifie que le service getTripDeals retourne le bon nombre d'offres pour un utilisateur donné.
      */
@@ -189,7 +308,7 @@ public class TestTourGuideService {
     public void getTripDeals() {
         // given
         GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
         InternalTestHelper.setInternalUserNumber(0);
         TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
@@ -203,4 +322,174 @@ public class TestTourGuideService {
         assertEquals(MAX_TRIP_DEALS, providers.size());
     }
 
+    /*
+     * vérifie que les offres sont réutilisées tant que les préférences et les points de l'utilisateur ne changent pas,
+     * et recalculées après un changement de préférences.
+     */
+    @Test
+    public void getTripDealsAreCachedByPricingInputs() {
+        // given
+        AtomicInteger pricingCalls = new AtomicInteger();
+        PricingGateway pricingGateway = (apiKey, attractionId, adults, children, nightsStay, rewardsPoints) -> {
+            pricingCalls.incrementAndGet();
+            return List.of(new Provider(attractionId, "provider" + adults, 100));
+        };
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(new GpsUtilGateway(gpsUtil), rewardsService,
+                rewardsService.getExecutors(), new HistoryProperties(),
+                new TripDealsAggregator(pricingGateway, rewardsService.getExecutors().pricing(),
+                        new TripDealsCache(new CacheProperties().getTripDeals()),
+                        new GatewayProperties.PricingFanOut(1, Duration.ofSeconds(5), 5), rewardsService.getMetrics()),
+                new TrackerProperties());
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // when
+        List<Provider> first = tourGuideService.getTripDeals(user);
+        List<Provider> second = tourGuideService.getTripDeals(user);
+        int callsBeforeChange = pricingCalls.get();
+        user.getUserPreferences().setNumberOfAdults(user.getUserPreferences().getNumberOfAdults() + 1);
+        List<Provider> afterChange = tourGuideService.getTripDeals(user);
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        assertEquals(1, callsBeforeChange);
+        assertSame(first, second);
+        assertEquals(2, pricingCalls.get());
+        assertSame(afterChange, user.getTripDeals());
+    }
+
+    /*
+     * vérifie que le suivi des utilisateurs ne dépasse jamais le nombre d'utilisateurs en cours autorisé,
+     * et que l'échec d'un utilisateur n'empêche pas le traitement des autres.
+     */
+    @Test
+    public void trackUserLocationByUsersIsBoundedAndIsolatesFailures() {
+        // given
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        UUID failingUserId = UUID.randomUUID();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                    if (userId.equals(failingUserId)) {
+                        throw new IllegalStateException("gps down");
+                    }
+                    return new VisitedLocation(userId, new Location(0, 0), new Date());
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        ExecutorProperties executorProperties = new ExecutorProperties();
+        executorProperties.setGpsPoolSize(20);
+        executorProperties.setMaxInFlightLocations(3);
+        TourGuideExecutors boundedExecutors = new TourGuideExecutors(executorProperties);
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), boundedExecutors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        List<User> users = IntStream.range(0, 50)
+                .mapToObj(i -> new User(i == 10 ? failingUserId : UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .collect(Collectors.toList());
+
+        // when
+        tourGuideService.trackUserLocationByUsers(users);
+        tourGuideService.tracker.stopTracking();
+        boundedExecutors.close();
+
+        // then
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+        assertEquals(49, users.stream().filter(u -> u.getVisitedLocations().size() == 1).count());
+        assertEquals(0, users.get(10).getVisitedLocations().size());
+        assertEquals(1, (int) tourGuideService.getMetrics().locationFailures().count());
+    }
+
+    /*
+     * vérifie que la localisation par lot met à jour l'historique de chaque utilisateur localisé,
+     * et qu'un utilisateur non localisé est absent du résultat sans bloquer les autres.
+     */
+    @Test
+    public void trackUserLocations() {
+        // given
+        UUID failingUserId = UUID.randomUUID();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                if (userId.equals(failingUserId)) {
+                    throw new IllegalStateException("gps down");
+                }
+                return new VisitedLocation(userId, new Location(0, 0), new Date());
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        List<User> users = IntStream.range(0, 20)
+                .mapToObj(i -> new User(i == 3 ? failingUserId : UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .collect(Collectors.toList());
+
+        // when
+        Map<String, VisitedLocation> locations = tourGuideService.trackUserLocations(users);
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        assertEquals(19, locations.size());
+        assertTrue(!locations.containsKey("user3"));
+        assertEquals(0, users.get(3).getVisitedLocations().size());
+        for (User user : users) {
+            if (user != users.get(3)) {
+                assertSame(locations.get(user.getUserName()), user.getLastVisitedLocation());
+                assertEquals(1, user.getRewardsProgress().processedLocations());
+            }
+        }
+    }
+
+    /*
+     * vérifie que si le service de géolocalisation est indisponible, la dernière position connue est retournée sans modifier l'historique.
+     */
+    @Test
+    public void trackUserLocationFallsBackToLastKnownLocation() {
+        // given : la librairie échoue, la passerelle résiliente refait l'essai puis abandonne.
+        AtomicInteger attempts = new AtomicInteger();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("gps down");
+            }
+        };
+        DependencyResilience resilience = new DependencyResilience("gps", new GatewayProperties.Resilience(
+                Duration.ofSeconds(1), 2, Duration.ofMillis(1), Duration.ofMillis(5), 10, Duration.ofSeconds(30)), 10,
+                new SimpleMeterRegistry());
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executors);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(
+                new ResilientGpsGateway(new GpsUtilGateway(gpsUtil), resilience), rewardsService, executors,
+                new HistoryProperties(),
+                new TripDealsAggregator(new TripPricerGateway(new TripPricer()), executors.pricing(),
+                        new TripDealsCache(new CacheProperties().getTripDeals()), new GatewayProperties().getPricingFanOut(),
+                        rewardsService.getMetrics()),
+                new TrackerProperties());
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        VisitedLocation lastKnown = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+        user.addToVisitedLocations(lastKnown);
+
+        // when
+        VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+        tourGuideService.tracker.stopTracking();
+        resilience.close();
+
+        // then
+        assertSame(lastKnown, visitedLocation);
+        assertEquals(2, attempts.get());
+        assertEquals(1, user.getVisitedLocations().size());
+        assertEquals(1, (int) tourGuideService.getMetrics().locationFailures().count());
+    }
+
 }
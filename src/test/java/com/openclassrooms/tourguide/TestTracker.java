@@ -0,0 +1,230 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import gpsUtil.GpsUtil;
+
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.concurrent.TourGuideExecutors;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.config.HistoryProperties;
+import com.openclassrooms.tourguide.config.TrackerProperties;
+import com.openclassrooms.tourguide.gateway.LatencyDistribution;
+import com.openclassrooms.tourguide.gateway.LatencySimulator;
+import com.openclassrooms.tourguide.gateway.SimulatedGpsGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedPricingGateway;
+import com.openclassrooms.tourguide.gateway.SimulatedRewardGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.model.user.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsAggregator;
+import com.openclassrooms.tourguide.tracker.ShardProgress;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerHealthIndicator;
+import com.openclassrooms.tourguide.tracker.TrackerStatus;
+import com.openclassrooms.tourguide.util.InternalTestHelper;
+
+// mémo : Tracker ==> cycles à cadence fixe, répartition des utilisateurs en shards, détection des dépassements, délestage.
+public class TestTracker {
+
+    // pools des services construits dans un test, arrêtés à la fin du test.
+    private final TourGuideExecutors executors = new TourGuideExecutors();
+
+    @AfterEach
+    public void closeExecutors() {
+        executors.close();
+    }
+
+    // service avec des passerelles simulées : getUserLocation dure gpsLatency, RewardCentral répond tout de suite.
+    private TourGuideService newTourGuideService(Duration gpsLatency, TrackerProperties trackerProperties) {
+        GatewayProperties.Simulation gps = new GatewayProperties.Simulation(LatencyDistribution.FIXED, gpsLatency, gpsLatency,
+                0, 0, 1);
+        GatewayProperties.Simulation instant = new GatewayProperties.Simulation(LatencyDistribution.FIXED, Duration.ZERO,
+                Duration.ZERO, 0, 0, 2);
+        SimulatedGpsGateway gpsGateway = new SimulatedGpsGateway(new LatencySimulator("gps", gps),
+                new GpsUtil().getAttractions());
+        RewardPointsCache cache = new RewardPointsCache(new SimulatedRewardGateway(new LatencySimulator("reward", instant)),
+                executors.reward(), new CacheProperties().getRewardPoints());
+        RewardsService rewardsService = new RewardsService(gpsGateway, executors, cache, new TourGuideMetrics());
+        return new TourGuideService(gpsGateway, rewardsService, executors, new HistoryProperties(),
+                new TripDealsAggregator(new SimulatedPricingGateway(new LatencySimulator("pricing", instant)),
+                        executors.pricing(), new TripDealsCache(new CacheProperties().getTripDeals()),
+                        new GatewayProperties().getPricingFanOut(), rewardsService.getMetrics()),
+                trackerProperties);
+    }
+
+    private static TrackerStatus awaitStatus(TourGuideService tourGuideService, Predicate<TrackerStatus> condition)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.test(tourGuideService.tracker.getStatus()) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        return tourGuideService.tracker.getStatus();
+    }
+
+    @Test
+    // vérifie que des cycles plus courts que l'intervalle se suivent à cadence fixe, sans dépassement.
+    public void cyclesWithinIntervalAreHealthy() throws InterruptedException {
+        // given
+        InternalTestHelper.setInternalUserNumber(5);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(200));
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofMillis(10), trackerProperties);
+
+        // when
+        long start = System.nanoTime();
+        TrackerStatus status = awaitStatus(tourGuideService, s -> s.cycles() >= 4);
+        long elapsed = System.nanoTime() - start;
+        tourGuideService.tracker.stopTracking();
+
+        // then : 4 cycles à 200 ms d'intervalle, le 1er démarrant tout de suite.
+        assertTrue(status.cycles() >= 4);
+        assertTrue(elapsed >= Duration.ofMillis(550).toNanos(), "elapsed " + elapsed);
+        assertEquals(0, status.totalOverruns());
+        assertEquals(Status.UP, new TrackerHealthIndicator(tourGuideService.tracker, 2).health().getStatus());
+    }
+
+    @Test
+    // vérifie que des cycles plus longs que l'intervalle sont détectés et rendent l'indicateur de santé DOWN.
+    public void overrunsAreDetected() throws InterruptedException {
+        // given
+        InternalTestHelper.setInternalUserNumber(1);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(50));
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofMillis(150), trackerProperties);
+
+        // when
+        TrackerStatus status = awaitStatus(tourGuideService, s -> s.consecutiveOverruns() >= 2);
+        tourGuideService.tracker.stopTracking();
+
+        // then
+        assertTrue(status.consecutiveOverruns() >= 2);
+        assertTrue(tourGuideService.getMetrics().trackerOverruns().count() >= 2);
+        assertEquals(Status.DOWN, new TrackerHealthIndicator(tourGuideService.tracker, 2).health().getStatus());
+    }
+
+    @Test
+    // vérifie qu'un cycle bloqué (jamais terminé, donc jamais compté comme dépassement) rend l'indicateur de santé DOWN.
+    public void blockedCycleIsDetected() throws InterruptedException {
+        // given : une localisation de 5 s pour une tranche horaire de 50 ms.
+        InternalTestHelper.setInternalUserNumber(1);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(50));
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofSeconds(5), trackerProperties);
+        Tracker tracker = tourGuideService.tracker;
+        TrackerHealthIndicator healthIndicator = new TrackerHealthIndicator(tracker, 2);
+
+        // when
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while ((tracker.getCurrentCycleDuration() == null
+                || tracker.getCurrentCycleDuration().compareTo(Duration.ofMillis(150)) < 0) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Status health = healthIndicator.health().getStatus();
+        TrackerStatus status = tracker.getStatus();
+        tracker.stopTracking();
+
+        // then
+        assertEquals(0, status.cycles());
+        assertEquals(Status.DOWN, health);
+    }
+
+    @Test
+    // vérifie qu'après un dépassement, le délestage n'ignore que la part des utilisateurs qui n'a pas tenu dans la tranche.
+    public void loadSheddingSkipsTheOverrunShareOfRecentlyTrackedUsers() throws InterruptedException {
+        // given
+        InternalTestHelper.setInternalUserNumber(3);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(50));
+        trackerProperties.setLoadShedding(true);
+        trackerProperties.setMinUserInterval(Duration.ofHours(1));
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofMillis(250), trackerProperties);
+
+        // when : le 1er cycle dure au moins 5 tranches, le 2ème ignore 4/5 des 3 utilisateurs localisés, soit 2.
+        TrackerStatus status = awaitStatus(tourGuideService, s -> s.cycles() >= 2);
+        tourGuideService.tracker.stopTracking();
+
+        // then : un utilisateur reste localisé à chaque cycle.
+        assertEquals(2, status.lastSkippedUsers());
+        assertEquals(1, status.lastTrackedUsers());
+        assertTrue(tourGuideService.getMetrics().trackerSkippedUsers().count() >= 2);
+    }
+
+    @Test
+    // vérifie que chaque shard ne localise que ses utilisateurs, et qu'un utilisateur ajouté en cours de route est pris en compte.
+    public void shardsSpreadUsersAcrossTheInterval() throws InterruptedException {
+        // given
+        InternalTestHelper.setInternalUserNumber(40);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(400));
+        trackerProperties.setShards(4);
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofMillis(1), trackerProperties);
+        Tracker tracker = tourGuideService.tracker;
+
+        // when : un tour complet des 4 shards.
+        awaitStatus(tourGuideService, s -> s.cycles() >= 4);
+        List<ShardProgress> firstRound = tracker.getShardProgress();
+
+        // then : chaque shard a été traité une fois et l'ensemble couvre les 40 utilisateurs.
+        assertEquals(4, firstRound.size());
+        assertTrue(firstRound.stream().allMatch(p -> p.passes() >= 1));
+        assertEquals(40, firstRound.stream().mapToInt(ShardProgress::lastTrackedUsers).sum());
+        for (ShardProgress progress : firstRound) {
+            long expected = tourGuideService.getAllUsers().stream()
+                    .filter(u -> Tracker.shardOf(u.getUserId(), 4) == progress.shard()).count();
+            assertEquals(expected, progress.lastTrackedUsers());
+        }
+
+        // when : ajout d'un utilisateur sans redémarrer le tracker.
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        tourGuideService.addUser(user);
+        long cycles = tracker.getStatus().cycles();
+        awaitStatus(tourGuideService, s -> s.cycles() >= cycles + 4);
+        tracker.stopTracking();
+
+        // then : l'utilisateur a été localisé lors du passage de son shard.
+        assertTrue(user.getVisitedLocations().size() >= 1);
+    }
+
+    @Test
+    // vérifie qu'un utilisateur ajouté et un autre supprimé entre deux passages sont pris en compte au passage suivant.
+    public void usersAddedAndRemovedBetweenPassesAreTakenIntoAccount() throws InterruptedException {
+        // given
+        InternalTestHelper.setInternalUserNumber(2);
+        TrackerProperties trackerProperties = new TrackerProperties();
+        trackerProperties.setInterval(Duration.ofMillis(50));
+        TourGuideService tourGuideService = newTourGuideService(Duration.ofMillis(1), trackerProperties);
+        Tracker tracker = tourGuideService.tracker;
+        awaitStatus(tourGuideService, s -> s.cycles() >= 1);
+
+        // when : le cycle en cours peut encore localiser l'utilisateur supprimé, pas les suivants.
+        User added = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        tourGuideService.addUser(added);
+        User removed = tourGuideService.removeUser("internalUser0");
+        long cycles = tracker.getStatus().cycles();
+        awaitStatus(tourGuideService, s -> s.cycles() >= cycles + 2);
+        int removedLocations = removed.getVisitedLocations().size();
+        TrackerStatus status = awaitStatus(tourGuideService, s -> s.cycles() >= cycles + 4);
+        tracker.stopTracking();
+
+        // then
+        assertEquals(2, tourGuideService.getAllUsers().size());
+        assertEquals(2, status.lastTrackedUsers());
+        assertTrue(added.getVisitedLocations().size() >= 1);
+        assertEquals(removedLocations, removed.getVisitedLocations().size());
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.config.CacheProperties;
+import com.openclassrooms.tourguide.config.GatewayProperties;
+import com.openclassrooms.tourguide.gateway.PricingGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.model.user.TripDealsQuery;
+import com.openclassrooms.tourguide.service.TripDealsAggregator;
+
+// mémo : TripDealsAggregator ==> appels TripPricer en parallèle, offres reçues avant l'échéance, retardataires en cache.
+public class TestTripDealsAggregator {
+
+    private static final TripDealsQuery QUERY = new TripDealsQuery(UUID.randomUUID(), 2, 1, 3, 100);
+
+    private static List<String> names(List<Provider> providers) {
+        return providers.stream().map(provider -> provider.name).collect(Collectors.toList());
+    }
+
+    @Test
+    // vérifie que les offres des appels sont fusionnées : l'offre la moins chère par fournisseur, triées par prix.
+    public void mergesTheCheapestOfferOfEachProvider() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        PricingGateway pricingGateway = (apiKey, attractionId, adults, children, nightsStay, rewardsPoints) -> calls
+                .getAndIncrement() == 0
+                        ? List.of(new Provider(attractionId, "A", 100), new Provider(attractionId, "B", 200),
+                                new Provider(attractionId, "C", 300))
+                        : List.of(new Provider(attractionId, "A", 50), new Provider(attractionId, "D", 150),
+                                new Provider(attractionId, "E", 400));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        TripDealsAggregator aggregator = new TripDealsAggregator(pricingGateway, executor,
+                new TripDealsCache(new CacheProperties().getTripDeals()),
+                new GatewayProperties.PricingFanOut(2, Duration.ofSeconds(5), 4), new TourGuideMetrics());
+
+        // when
+        TripDealsAggregator.TripDeals tripDeals = aggregator.getTripDeals("key", QUERY);
+        executor.shutdown();
+
+        // then
+        assertTrue(tripDeals.complete());
+        assertEquals(List.of("A", "D", "B", "C"), names(tripDeals.providers()));
+        assertEquals(50, tripDeals.providers().get(0).price);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    // vérifie qu'à l'échéance les offres déjà reçues sont retournées, et que l'appel retardataire complète le cache.
+    public void returnsPartialOffersAtTheDeadlineAndCachesLateOnes() throws InterruptedException {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        PricingGateway pricingGateway = (apiKey, attractionId, adults, children, nightsStay, rewardsPoints) -> {
+            if (calls.getAndIncrement() == 0) {
+                return List.of(new Provider(attractionId, "A", 100));
+            }
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Provider(attractionId, "B", 50));
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        TripDealsCache cache = new TripDealsCache(new CacheProperties().getTripDeals());
+        TourGuideMetrics metrics = new TourGuideMetrics();
+        TripDealsAggregator aggregator = new TripDealsAggregator(pricingGateway, executor, cache,
+                new GatewayProperties.PricingFanOut(2, Duration.ofMillis(100), 5), metrics);
+
+        // when
+        TripDealsAggregator.TripDeals partial = aggregator.getTripDeals("key", QUERY);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (cache.getIfPresent(QUERY) == null && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        TripDealsAggregator.TripDeals complete = aggregator.getTripDeals("key", QUERY);
+        executor.shutdown();
+
+        // then
+        assertFalse(partial.complete());
+        assertEquals(List.of("A"), names(partial.providers()));
+        assertEquals(1, (int) metrics.tripDealsPartial().count());
+        assertTrue(complete.complete());
+        assertEquals(List.of("B", "A"), names(complete.providers()));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    // vérifie qu'aucune offre n'est retournée si aucun appel n'a répondu à l'échéance (pas d'offres d'autres critères).
+    public void returnsNoOffersWhenNoCallEndedAtTheDeadline() {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        PricingGateway pricingGateway = (apiKey, attractionId, adults, children, nightsStay, rewardsPoints) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Provider(attractionId, "A", 100));
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        TourGuideMetrics metrics = new TourGuideMetrics();
+        TripDealsAggregator aggregator = new TripDealsAggregator(pricingGateway, executor,
+                new TripDealsCache(new CacheProperties().getTripDeals()), new GatewayProperties.PricingFanOut(),
+                metrics);
+
+        // when
+        TripDealsAggregator.TripDeals tripDeals = aggregator.getTripDeals("key", QUERY);
+        release.countDown();
+        executor.shutdown();
+
+        // then
+        assertFalse(tripDeals.complete());
+        assertTrue(tripDeals.providers().isEmpty());
+        assertEquals(1, (int) metrics.tripDealsEmpty().count());
+    }
+
+}
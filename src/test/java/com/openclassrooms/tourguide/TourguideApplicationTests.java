@@ -1,13 +1,43 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.openclassrooms.tourguide.controller.TourGuideController;
 
 @SpringBootTest
 class TourguideApplicationTests {
 
+    @Autowired
+    private TourGuideController tourGuideController;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    // vérifie qu'un lot de plus de MAX_TRACKED_USERS utilisateurs est refusé (400) sans appeler la géolocalisation.
+    void trackUsersRejectsTooLargeBatches() {
+        // given
+        List<String> userNames = IntStream.rangeClosed(0, TourGuideController.MAX_TRACKED_USERS)
+                .mapToObj(i -> "internalUser" + i).collect(Collectors.toList());
+
+        // when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> tourGuideController.trackUsers(userNames));
+
+        // then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
 }